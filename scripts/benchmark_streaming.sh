@@ -131,44 +131,43 @@ if [ "$SETUP_OBJECTS" = true ]; then
     java -jar "$JAR_PATH" \
         --bucket="$BUCKET" \
         --object=2MB.dat \
-        --operation=write \
+        --operation=provision \
         --write_size=$SIZE_2MB \
-        --client=grpc \
-        --runs=1 2>/dev/null || true
+        --client=grpc 2>/dev/null || true
     
     echo -e "  Creating 4MB.dat..."
     java -jar "$JAR_PATH" \
         --bucket="$BUCKET" \
         --object=4MB.dat \
-        --operation=write \
+        --operation=provision \
         --write_size=$SIZE_4MB \
-        --client=grpc \
-        --runs=1 2>/dev/null || true
+        --client=grpc 2>/dev/null || true
     
     echo -e "${GREEN}✓ Test objects created${NC}"
     echo ""
 fi
 
-# Run a single benchmark
+# Run one operation and size for every client in a single JVM
 run_benchmark() {
-    local client="$1"
-    local operation="$2"
-    local size_name="$3"
-    local size_bytes="$4"
-    local object_name="$5"
-    local tag="${client}_${operation}_${size_name}"
+    local operation="$1"
+    local size_name="$2"
+    local size_bytes="$3"
+    local object_name="$4"
+    local tag="${operation}_${size_name}"
+    local clients
+    clients=$(IFS=,; echo "${CLIENTS[*]}")
     
-    echo -e "${CYAN}▶ ${client} | ${operation} | ${size_name}${NC}"
+    echo -e "${CYAN}▶ ${operation} | ${size_name} | ${clients}${NC}"
     
     local args=(
         --bucket="$BUCKET"
-        --client="$client"
         --runs="$RUNS"
         --threads="$THREADS"
         --warmups="$WARMUPS"
         --report_file="$REPORT_FILE"
         --data_file="$DATA_FILE"
         --report_tag="$tag"
+        --sweep="client=$clients"
     )
     
     if [ "$operation" = "read" ]; then
@@ -177,7 +176,7 @@ run_benchmark() {
         args+=(--object="${object_name}_write_test.dat" --operation=write --write_size="$size_bytes")
     fi
     
-    java -jar "$JAR_PATH" "${args[@]}" 2>&1 | grep -E "(Throughput|p50|p95|p99|Operations|Error)" || true
+    java -jar "$JAR_PATH" "${args[@]}" 2>&1 | grep -E "(Sweep point|Throughput|p50|p95|p99|Operations|Error)" || true
     echo ""
 }
 
@@ -187,24 +186,17 @@ echo -e "${BLUE}                    Running Benchmarks
 echo -e "${BLUE}═══════════════════════════════════════════════════════════════${NC}"
 echo ""
 
-for client in "${CLIENTS[@]}"; do
-    echo -e "${YELLOW}━━━ Client: $client ━━━${NC}"
-    echo ""
-    
-    # 2MB Read
-    run_benchmark "$client" "read" "2MB" "$SIZE_2MB" "2MB.dat"
-    
-    # 2MB Write
-    run_benchmark "$client" "write" "2MB" "$SIZE_2MB" "2MB"
-    
-    # 4MB Read
-    run_benchmark "$client" "read" "4MB" "$SIZE_4MB" "4MB.dat"
-    
-    # 4MB Write
-    run_benchmark "$client" "write" "4MB" "$SIZE_4MB" "4MB"
-    
-    echo ""
-done
+# 2MB Read
+run_benchmark "read" "2MB" "$SIZE_2MB" "2MB.dat"
+
+# 2MB Write
+run_benchmark "write" "2MB" "$SIZE_2MB" "2MB"
+
+# 4MB Read
+run_benchmark "read" "4MB" "$SIZE_4MB" "4MB.dat"
+
+# 4MB Write
+run_benchmark "write" "4MB" "$SIZE_4MB" "4MB"
 
 echo -e "${GREEN}╔════════════════════════════════════════════════════════════════╗${NC}"
 echo -e "${GREEN}║                   Benchmark Complete!                          ║${NC}"
@@ -0,0 +1,75 @@
+package com.google.cloud.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.storage.v2.ChecksummedData;
+import com.google.storage.v2.ReadObjectResponse;
+import com.google.storage.v2.StorageGrpc;
+import com.google.storage.v2.WriteObjectRequest;
+import io.grpc.MethodDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the per-message work on the data path: building write chunks from
+ * each write source and parsing ReadObject responses the way the gRPC
+ * marshaller does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+    @Param({"262144", "2097152"})
+    public int chunkSize;
+
+    @Param({"random", "stream"})
+    public String writeSource;
+
+    private WriteSource source;
+    private byte[] serializedResponse;
+    private MethodDescriptor.Marshaller<ReadObjectResponse> marshaller;
+
+    @Setup
+    public void setup() {
+        source = "random".equals(writeSource)
+                ? new WriteSources.RandomArraySource(chunkSize, 1.0)
+                : new WriteSources.RotatingSource(16 * 1024 * 1024, 1.0);
+        serializedResponse = ReadObjectResponse.newBuilder()
+                .setChecksummedData(ChecksummedData.newBuilder()
+                        .setContent(ByteString.copyFrom(RandomData.generate(chunkSize, 1.0)))
+                        .setCrc32C(0x12345678))
+                .build()
+                .toByteArray();
+        marshaller = StorageGrpc.getReadObjectMethod().getResponseMarshaller();
+    }
+
+    @Benchmark
+    public WriteObjectRequest writeChunk() {
+        ByteString content = source.open(chunkSize).next(chunkSize);
+        return WriteObjectRequest.newBuilder()
+                .setWriteOffset(0)
+                .setChecksummedData(ChecksummedData.newBuilder().setContent(content).build())
+                .build();
+    }
+
+    @Benchmark
+    public long parseReadResponse() throws Exception {
+        try (InputStream stream = new ByteArrayInputStream(serializedResponse)) {
+            return marshaller.parse(stream).getChecksummedData().getContent().size();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.google.cloud.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import picocli.CommandLine;
+
+/**
+ * Cost of picking the object name for an operation: formatting one from
+ * --object_format, and the precompiled table the runners use.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectResolverBenchmark {
+    private static final String FORMAT = "prefix/{t}/object-{o}.dat";
+
+    private ObjectResolver resolver;
+    private int objectId;
+
+    @Setup
+    public void setup() {
+        BenchmarkParameters parameters = new BenchmarkParameters();
+        new CommandLine(parameters).parseArgs("--bucket=bucket", "--object=object",
+                "--object_format=" + FORMAT, "--threads=16", "--object_stop=1000");
+        resolver = new ObjectResolver(parameters);
+    }
+
+    @Benchmark
+    public String resolveName() {
+        objectId = (objectId + 1) % 1000;
+        return ObjectResolver.resolveName(FORMAT, "object", 3, objectId);
+    }
+
+    @Benchmark
+    public String precompiled() {
+        return resolver.next(3);
+    }
+}
@@ -0,0 +1,48 @@
+package com.google.cloud.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the percentile computation behind every report line, for the
+ * number of latencies a run records.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReportWriterBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int runs;
+
+    private List<Double> latencies;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        latencies = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            latencies.add(Math.exp(random.nextGaussian()) * 10);
+        }
+    }
+
+    @Benchmark
+    public double p99() {
+        return ReportWriter.calculatePercentile(latencies, 99);
+    }
+}
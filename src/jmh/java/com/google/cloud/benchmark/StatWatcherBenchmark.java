@@ -0,0 +1,77 @@
+package com.google.cloud.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of recording a completed operation in {@link StatWatcher}, alone and
+ * with worker threads contending for the shared lists. The watcher is
+ * replaced every iteration so the record lists do not grow without bound.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StatWatcherBenchmark {
+    private StatWatcher watcher;
+    private final AtomicInteger threadIds = new AtomicInteger(0);
+
+    @State(Scope.Thread)
+    public static class WorkerState {
+        int threadId;
+        List<RunnerWatcher.ChunkRecord> chunks;
+
+        @Setup
+        public void setup(StatWatcherBenchmark benchmark) {
+            threadId = benchmark.threadIds.getAndIncrement();
+            chunks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                chunks.add(new RunnerWatcher.ChunkRecord(i, 2 * 1024 * 1024));
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        watcher = new StatWatcher();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void uncontended(WorkerState state) {
+        record(state);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void contended8(WorkerState state) {
+        record(state);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void contended32(WorkerState state) {
+        record(state);
+    }
+
+    private void record(WorkerState state) {
+        watcher.notifyCompleted("read", state.threadId, state.threadId, "10.0.0.1:443", "object-1",
+                12.5, 8 * 1024 * 1024, true, "", "", state.chunks);
+    }
+}
@@ -0,0 +1,75 @@
+package com.google.cloud.benchmark;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import picocli.CommandLine;
+
+/**
+ * Cost of getting stubs for one operation from each channel policy, as the
+ * runners do before every call. Channels are never connected; only the
+ * client-side bookkeeping is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class StubProviderBenchmark {
+    @Param({"const", "perthread", "pool", "percall"})
+    public String cpolicy;
+
+    private StorageStubProvider provider;
+
+    @Setup
+    public void setup() {
+        BenchmarkParameters parameters = new BenchmarkParameters();
+        new CommandLine(parameters).parseArgs("--bucket=bucket", "--object=object", "--client=grpc",
+                "--cred=insecure", "--plaintext", "--carg=4");
+        Supplier<ManagedChannel> channelCreator = () -> ChannelFactory.createChannel(parameters, false);
+        switch (cpolicy) {
+            case "const":
+                provider = new ConstChannelPool(channelCreator, parameters);
+                break;
+            case "perthread":
+                provider = new PerThreadChannelPool(channelCreator, parameters);
+                break;
+            case "pool":
+                provider = new RoundRobinChannelPool(channelCreator, parameters, parameters.carg);
+                break;
+            case "percall":
+                provider = new PerCallChannelPool(channelCreator, parameters);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cpolicy: " + cpolicy);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.shutdown();
+    }
+
+    @Benchmark
+    public StorageStubProvider.StubHolder getStub() {
+        StorageStubProvider.StubHolder holder = provider.getStub();
+        provider.reportResult(holder.channel, Status.OK, 0);
+        return holder;
+    }
+}
@@ -0,0 +1,239 @@
+package com.google.cloud.benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access trace that can be replayed by the runners (--trace_replay) or
+ * recorded from a run (--trace_record). Traces are CSV files with one
+ * operation per line:
+ *
+ * <pre>
+ * timestamp_ms,operation,object,offset,length
+ * 1700000001234,read,data/obj-17,0,1048576
+ * 1700000001240,write,data/obj-99,-1,4194304
+ * 1700000001251,random-read,data/obj-3,3145728,65536
+ * </pre>
+ *
+ * For reads offset/length are the requested range (length -1 reads to the
+ * end), for writes length is the object size and for random reads offset is
+ * where the chunk was read (-1 picks a random offset) and length is the chunk
+ * size. Metadata operations (stat, list, delete, update) ignore
+ * offset and length. Timestamps only matter relative to each other.
+ */
+public class AccessTrace {
+
+    /**
+     * A single traced operation.
+     */
+    public static class Entry {
+        public final long timestampMs;
+        public final String object;
+        public final Operation operation;
+
+        Entry(long timestampMs, String object, Operation operation) {
+            this.timestampMs = timestampMs;
+            this.object = object;
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * Runs one replayed operation.
+     */
+    public interface Task {
+        /**
+         * @param dueNanos When the operation was scheduled, so its latency
+         *                 includes the time it queued for a worker
+         */
+        void run(int threadId, Entry entry, long dueNanos);
+    }
+
+    private final List<Entry> entries;
+
+    private AccessTrace(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Load the trace named by --trace_replay.
+     *
+     * @return The trace, or null if no replay is configured
+     */
+    public static AccessTrace fromParameters(BenchmarkParameters parameters) {
+        if (parameters.traceReplay.isEmpty()) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(parameters.traceReplay))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("timestamp")) {
+                    continue;
+                }
+                entries.add(parseLine(line, lineNumber, parameters));
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to load trace " + parameters.traceReplay, e);
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("Trace " + parameters.traceReplay + " has no operations");
+        }
+        entries.sort(Comparator.comparingLong(e -> e.timestampMs));
+        return new AccessTrace(entries);
+    }
+
+    private static Entry parseLine(String line, int lineNumber, BenchmarkParameters parameters) {
+        String[] fields = line.split(",");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Trace line " + lineNumber + " needs 5 fields: " + line);
+        }
+        try {
+            long timestampMs = Long.parseLong(fields[0].trim());
+            String type = fields[1].trim().toLowerCase();
+            String object = fields[2].trim();
+            long offset = Long.parseLong(fields[3].trim());
+            long length = Long.parseLong(fields[4].trim());
+            Operation operation;
+            switch (type) {
+                case "read":
+                    operation = new Operation(type, 0, parameters.chunkSize, offset, length);
+                    break;
+                case "random-read":
+                    operation = new Operation(type, 0, length, -1, -1, offset);
+                    break;
+                case "write":
+                    operation = new Operation(type, length, parameters.chunkSize, -1, -1);
+                    break;
+                case "stat":
+                case "list":
+                case "delete":
+                case "update":
+                    operation = new Operation(type, 0, -1, -1, -1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown operation on trace line " + lineNumber + ": "
+                            + fields[1]);
+            }
+            return new Entry(timestampMs, object, operation);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad number on trace line " + lineNumber + ": " + line, e);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean hasWrites() {
+        return entries.stream().anyMatch(e -> e.operation.isWrite());
+    }
+
+    public long maxWriteSize() {
+        return entries.stream().filter(e -> e.operation.isWrite())
+                .mapToLong(e -> e.operation.writeSize).max().orElse(0);
+    }
+
+    public long durationMs() {
+        return entries.get(entries.size() - 1).timestampMs - entries.get(0).timestampMs;
+    }
+
+    /**
+     * Submit the first {@code count} entries to the executor, spreading them
+     * over the logical threads in order. With a positive speed each entry is
+     * submitted at its original offset from the start of the trace divided
+     * by the speed; with speed 0 entries are submitted as fast as possible.
+     * Submission is open loop: a slow operation delays only the operations
+     * queued behind it on the executor, not the schedule, and that queueing
+     * counts towards their latency. With speed 0 there is no schedule and
+     * latency starts when a worker picks the operation up.
+     */
+    public void replay(ExecutorService executor, int threads, int count, double speed, Task task) {
+        long firstTimestampMs = entries.get(0).timestampMs;
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < Math.min(count, entries.size()); i++) {
+            Entry entry = entries.get(i);
+            final int threadId = i % threads;
+            if (speed > 0) {
+                long dueNanos = startNanos + (long) ((entry.timestampMs - firstTimestampMs) * 1_000_000L / speed);
+                long waitNanos;
+                while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                executor.submit(() -> task.run(threadId, entry, dueNanos));
+            } else {
+                executor.submit(() -> task.run(threadId, entry, System.nanoTime()));
+            }
+        }
+    }
+
+    /**
+     * Writes the operations of a run in the trace format (--trace_record).
+     * Lines from concurrent operations are appended in completion order.
+     */
+    public static class Recorder {
+        private final PrintWriter writer;
+
+        private Recorder(PrintWriter writer) {
+            this.writer = writer;
+            writer.println("timestamp_ms,operation,object,offset,length");
+        }
+
+        /**
+         * @return The recorder, or null if --trace_record is not set
+         */
+        public static Recorder fromParameters(BenchmarkParameters parameters) {
+            if (parameters.traceRecord.isEmpty()) {
+                return null;
+            }
+            try {
+                BufferedWriter out = Files.newBufferedWriter(Paths.get(parameters.traceRecord));
+                return new Recorder(new PrintWriter(out));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open trace file " + parameters.traceRecord, e);
+            }
+        }
+
+        /**
+         * @param timestampMs  Wall-clock start of the operation
+         * @param randomOffset Offset a random read actually read at
+         * @param bytes        Bytes actually transferred, used as the length of
+         *                     reads that asked for the whole object
+         */
+        public synchronized void record(long timestampMs, Operation operation, String object, long randomOffset,
+                long bytes) {
+            long offset;
+            long length;
+            if (operation.isMetadata()) {
+                offset = -1;
+                length = 0;
+            } else if (operation.isWrite()) {
+                offset = -1;
+                length = operation.writeSize;
+            } else if (operation.isRandomRead()) {
+                offset = randomOffset;
+                length = operation.chunkSize;
+            } else {
+                offset = Math.max(0, operation.readOffset);
+                length = operation.readLimit > 0 ? operation.readLimit : bytes;
+            }
+            writer.printf("%d,%s,%s,%d,%d%n", timestampMs, operation.type, object, offset, length);
+        }
+
+        public synchronized void close() {
+            writer.close();
+        }
+    }
+}
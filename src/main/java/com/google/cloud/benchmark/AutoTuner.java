@@ -0,0 +1,274 @@
+package com.google.cloud.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import picocli.CommandLine;
+
+/**
+ * Searches --threads, --carg and --chunk_size for the best configuration of
+ * a run (--autotune). Every probe is a normal run of --runs operations with
+ * its own warmup, like one point of a --sweep. The search is a coordinate
+ * hill climb over power-of-two ladders: starting from the values on the
+ * command line, it keeps stepping one option up or down while that improves
+ * the objective by more than the noise margin, until a full pass over the
+ * options finds nothing better or the time budget runs out.
+ */
+public class AutoTuner {
+    /** Smaller gains are treated as noise between probes */
+    private static final double MIN_GAIN = 0.03;
+    /** Probes with more failed operations than this are not considered */
+    private static final double MAX_ERROR_RATE = 0.01;
+    private static final long MAX_WRITE_CHUNK = 2 * 1024 * 1024;
+    private static final List<String> OWN_OPTIONS = Arrays.asList("autotune", "autotune_budget_sec");
+
+    /**
+     * One tuned option and the values it can take, in ascending order.
+     */
+    private static class Dimension {
+        final String name;
+        final List<Long> values;
+        final int start;
+
+        Dimension(String name, long start, long min, long max) {
+            this.name = name;
+            TreeSet<Long> ladder = new TreeSet<>();
+            for (long value = min; value <= max; value *= 2) {
+                ladder.add(value);
+            }
+            ladder.add(start);
+            this.values = new ArrayList<>(ladder);
+            this.start = values.indexOf(start);
+        }
+    }
+
+    /**
+     * Result of one probe.
+     */
+    private static class Probe {
+        final Map<String, String> point;
+        final double throughputMibps;
+        final double opsPerSecond;
+        final double cpuSecondsPerGib;
+        final double cpuNanosPerOperation;
+        final double errorRate;
+
+        Probe(Map<String, String> point, Main.RunResult result) {
+            this.point = point;
+            StatWatcher watcher = result.watcher;
+            int operations = watcher.getOperations().size();
+            this.throughputMibps = result.throughputMibps();
+            this.opsPerSecond = result.durationMs == 0 ? 0.0
+                    : watcher.getLatencies().size() * 1000.0 / result.durationMs;
+            this.cpuSecondsPerGib = watcher.getCpuSecondsPerGib();
+            this.cpuNanosPerOperation = watcher.getCpuNanosPerOperation();
+            this.errorRate = operations == 0 ? 1.0 : 1.0 - (double) watcher.getLatencies().size() / operations;
+        }
+    }
+
+    private final CommandLine cmd;
+    private final String[] args;
+    private final boolean minimizeCpu;
+    private final boolean metadataOnly;
+    private final long budgetMs;
+    private final List<Dimension> dimensions = new ArrayList<>();
+    private final Map<Map<String, String>, Probe> probes = new LinkedHashMap<>();
+    private long startMs;
+    private long lastProbeMs;
+
+    private AutoTuner(CommandLine cmd, String[] args, BenchmarkParameters parameters) {
+        this.cmd = cmd;
+        this.args = args;
+        switch (parameters.autotune.toLowerCase()) {
+            case "throughput":
+                this.minimizeCpu = false;
+                break;
+            case "cpu":
+                this.minimizeCpu = true;
+                break;
+            default:
+                throw new CommandLine.ParameterException(cmd,
+                        "Unknown --autotune: " + parameters.autotune + " (throughput, cpu)");
+        }
+        Operation operation = Operation.fromParameters(parameters);
+        this.metadataOnly = operation.isMetadata() || parameters.mtest > 0;
+        this.budgetMs = parameters.autotuneBudgetSec * 1000;
+
+        dimensions.add(new Dimension("threads", Math.max(1, parameters.threads), 1, 256));
+        if ("grpc".equalsIgnoreCase(parameters.client) && "pool".equalsIgnoreCase(parameters.cpolicy)) {
+            dimensions.add(new Dimension("carg", Math.max(1, parameters.carg), 1, 64));
+        } else {
+            System.out.println("Autotune: --carg is only tuned with --client=grpc --cpolicy=pool");
+        }
+        if (operation.isWrite() && parameters.workload.isEmpty()) {
+            long chunkSize = parameters.chunkSize > 0 ? Math.min(parameters.chunkSize, MAX_WRITE_CHUNK)
+                    : MAX_WRITE_CHUNK;
+            dimensions.add(new Dimension("chunk_size", chunkSize, 64 * 1024, MAX_WRITE_CHUNK));
+        } else {
+            // For random-read the chunk size is the read size, i.e. part of the workload
+            System.out.println("Autotune: --chunk_size is only tuned for --operation=write");
+        }
+    }
+
+    /**
+     * Run the search for --autotune and print the best configuration.
+     */
+    public static void run(CommandLine cmd, String[] args, BenchmarkParameters parameters) {
+        if (!parameters.sweep.isEmpty()) {
+            throw new CommandLine.ParameterException(cmd, "--autotune cannot be combined with --sweep");
+        }
+        if (parameters.autotuneBudgetSec <= 0) {
+            throw new CommandLine.ParameterException(cmd, "--autotune_budget_sec must be positive");
+        }
+        new AutoTuner(cmd, args, parameters).search();
+    }
+
+    private void search() {
+        startMs = System.currentTimeMillis();
+        String objective = minimizeCpu ? "lowest CPU per " + (metadataOnly ? "operation" : "GiB")
+                : "highest throughput";
+        System.out.printf("Autotune: %s over %s within %d s%n", objective, describeDimensions(), budgetMs / 1000);
+
+        int[] current = new int[dimensions.size()];
+        for (int d = 0; d < dimensions.size(); d++) {
+            current[d] = dimensions.get(d).start;
+        }
+        Probe best = probe(current);
+        boolean improved = true;
+        while (improved && hasBudget()) {
+            improved = false;
+            for (int d = 0; d < dimensions.size() && hasBudget(); d++) {
+                for (int direction : new int[] {1, -1}) {
+                    boolean moved = false;
+                    while (hasBudget()) {
+                        int[] next = current.clone();
+                        next[d] += direction;
+                        if (next[d] < 0 || next[d] >= dimensions.get(d).values.size()
+                                || probes.containsKey(point(next))) {
+                            break;
+                        }
+                        Probe candidate = probe(next);
+                        if (!isBetter(candidate, best)) {
+                            break;
+                        }
+                        current = next;
+                        best = candidate;
+                        moved = true;
+                        improved = true;
+                    }
+                    if (moved) {
+                        // No need to look the other way
+                        break;
+                    }
+                }
+            }
+        }
+        if (!hasBudget()) {
+            System.out.println("Autotune: time budget used up");
+        }
+        printSummary(best);
+    }
+
+    private Probe probe(int[] indexes) {
+        Map<String, String> point = point(indexes);
+        System.out.printf("%n=== Autotune probe %d: %s ===%n", probes.size() + 1, ParameterSweep.describe(point));
+        // Leave the garbage of the previous probe out of this one
+        System.gc();
+        long probeStart = System.currentTimeMillis();
+        Probe probe = new Probe(point, Main.runBenchmark(cmd, ParameterSweep.apply(args, point), point));
+        lastProbeMs = System.currentTimeMillis() - probeStart;
+        probes.put(point, probe);
+        if (probe.errorRate > MAX_ERROR_RATE) {
+            System.err.printf("WARN: %.1f%% of the operations of probe %s failed, not considered%n",
+                    probe.errorRate * 100, ParameterSweep.describe(point));
+        }
+        return probe;
+    }
+
+    private Map<String, String> point(int[] indexes) {
+        Map<String, String> point = new LinkedHashMap<>();
+        for (int d = 0; d < dimensions.size(); d++) {
+            point.put(dimensions.get(d).name, String.valueOf(dimensions.get(d).values.get(indexes[d])));
+        }
+        return point;
+    }
+
+    /**
+     * @return Whether another probe, as long as the last one, fits the budget
+     */
+    private boolean hasBudget() {
+        return System.currentTimeMillis() - startMs + lastProbeMs <= budgetMs;
+    }
+
+    private boolean isBetter(Probe candidate, Probe best) {
+        if (candidate.errorRate > MAX_ERROR_RATE) {
+            return false;
+        }
+        if (best.errorRate > MAX_ERROR_RATE) {
+            return true;
+        }
+        if (minimizeCpu) {
+            return cost(candidate) < cost(best) * (1 - MIN_GAIN);
+        }
+        return score(candidate) > score(best) * (1 + MIN_GAIN);
+    }
+
+    private double score(Probe probe) {
+        return metadataOnly ? probe.opsPerSecond : probe.throughputMibps;
+    }
+
+    private double cost(Probe probe) {
+        return metadataOnly ? probe.cpuNanosPerOperation : probe.cpuSecondsPerGib;
+    }
+
+    private String describeDimensions() {
+        List<String> names = new ArrayList<>();
+        for (Dimension dimension : dimensions) {
+            names.add(dimension.name);
+        }
+        return String.join(", ", names);
+    }
+
+    private void printSummary(Probe best) {
+        System.out.println();
+        System.out.printf("Autotune Results (%d probes, %d s):%n", probes.size(),
+                (System.currentTimeMillis() - startMs) / 1000);
+        String unit = metadataOnly ? "ops/s" : "MiB/s";
+        String cpuUnit = metadataOnly ? "CPU us/op" : "CPU s/GiB";
+        int width = "probe".length();
+        for (Map<String, String> point : probes.keySet()) {
+            width = Math.max(width, ParameterSweep.describe(point).length());
+        }
+        String row = "  %-" + width + "s %10s %10s %8s%s%n";
+        System.out.printf(row, "probe", unit, cpuUnit, "errors", "");
+        for (Probe probe : probes.values()) {
+            System.out.printf(row, ParameterSweep.describe(probe.point),
+                    String.format("%.2f", score(probe)),
+                    metadataOnly ? String.format("%.0f", probe.cpuNanosPerOperation / 1e3)
+                            : String.format("%.3f", probe.cpuSecondsPerGib),
+                    String.format("%.1f%%", probe.errorRate * 100),
+                    probe == best ? "  <- best" : "");
+        }
+        if (best.errorRate > MAX_ERROR_RATE) {
+            System.err.println("WARN: No probe completed without errors; no configuration recommended");
+            return;
+        }
+        List<String> bestArgs = ParameterSweep.arguments(args, best.point, OWN_OPTIONS);
+        StringBuilder commandLine = new StringBuilder("java -jar target/gcs-java-bench-1.0-SNAPSHOT.jar");
+        for (String arg : bestArgs) {
+            commandLine.append(' ').append(quote(arg));
+        }
+        System.out.println("Best configuration: " + ParameterSweep.describe(best.point));
+        System.out.println(commandLine);
+    }
+
+    private static String quote(String arg) {
+        if (arg.matches("[A-Za-z0-9_./:=,+@%-]+")) {
+            return arg;
+        }
+        return "'" + arg.replace("'", "'\\''") + "'";
+    }
+}
@@ -0,0 +1,234 @@
+package com.google.cloud.benchmark;
+
+import io.grpc.ManagedChannel;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for benchmark operations. They are recorded by
+ * any JFR recording, e.g. one started with -XX:StartFlightRecording or by
+ * --jfr_file for the timed phase only, and line up operations with the GC
+ * pauses, safepoints and thread stalls they overlapped. When no recording is
+ * running the events cost an allocation and a flag check.
+ */
+public class BenchmarkEvents {
+    private static final String CATEGORY = "GCS Bench";
+
+    private static final ThreadLocal<OperationEvent> CURRENT = new ThreadLocal<>();
+
+    @Name("gcsbench.Operation")
+    @Label("Benchmark Operation")
+    @Description("One benchmark operation, from its first attempt to its completion")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Object")
+        String object;
+
+        @Label("Worker Thread")
+        int threadId;
+
+        @Label("Channel")
+        String channel;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Attempts")
+        int attempts;
+
+        @Label("Success")
+        boolean success;
+
+        @Label("Error Code")
+        String errorCode;
+
+        @Label("Warmup")
+        boolean warmup;
+    }
+
+    @Name("gcsbench.Retry")
+    @Label("Benchmark Retry")
+    @Description("A failed attempt of an operation that is retried with --trying")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class RetryEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Object")
+        String object;
+
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Error")
+        String error;
+    }
+
+    @Name("gcsbench.Chunk")
+    @Label("Benchmark Chunk")
+    @Description("Arrival of one chunk of read data")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ChunkEvent extends Event {
+        @Label("Object")
+        String object;
+
+        @Label("Offset")
+        @DataAmount
+        long offset;
+
+        @Label("Size")
+        @DataAmount
+        long size;
+    }
+
+    /**
+     * Start the event of an operation on the current thread.
+     *
+     * @param warmup Whether the operation is part of the warmup
+     */
+    public static OperationEvent begin(Operation operation, String objectName, int threadId, boolean warmup) {
+        OperationEvent event = new OperationEvent();
+        if (event.isEnabled()) {
+            event.operation = operation.type;
+            event.object = objectName;
+            event.threadId = threadId;
+            event.warmup = warmup;
+            event.begin();
+            CURRENT.set(event);
+        }
+        return event;
+    }
+
+    /**
+     * Finish the event of an operation started with {@link #begin}.
+     */
+    public static void end(OperationEvent event, long bytes, int attempts, boolean success, String errorCode) {
+        if (!event.isEnabled()) {
+            return;
+        }
+        CURRENT.remove();
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.attempts = attempts;
+            event.success = success;
+            event.errorCode = errorCode;
+            event.commit();
+        }
+    }
+
+    /**
+     * Note the channel used by the operation running on the current thread.
+     */
+    public static void channel(ManagedChannel channel) {
+        OperationEvent event = CURRENT.get();
+        if (event != null) {
+            event.channel = channel.authority() + "#" + Integer.toHexString(System.identityHashCode(channel));
+        }
+    }
+
+    public static void retry(Operation operation, String objectName, int attempt, Exception error) {
+        RetryEvent event = new RetryEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation.type;
+            event.object = objectName;
+            event.attempt = attempt;
+            event.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+            event.commit();
+        }
+    }
+
+    /**
+     * Record a chunk of read data received by the current thread.
+     *
+     * @param offset Bytes of the read received before this chunk
+     */
+    public static void chunk(long offset, long size) {
+        ChunkEvent event = new ChunkEvent();
+        if (event.shouldCommit()) {
+            OperationEvent operation = CURRENT.get();
+            event.object = operation != null ? operation.object : "";
+            event.offset = offset;
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    /**
+     * Start a recording of the timed phase if --jfr_file is set.
+     *
+     * @return The recording, or null if disabled
+     */
+    public static Recording startRecording(BenchmarkParameters parameters) {
+        if (parameters.jfrFile.isEmpty()) {
+            return null;
+        }
+        Recording recording = new Recording(configuration(parameters));
+        recording.setName("gcs-bench timed phase");
+        recording.start();
+        return recording;
+    }
+
+    /**
+     * Load --jfr_settings, so a bad value can be rejected before anything
+     * runs.
+     */
+    public static Configuration configuration(BenchmarkParameters parameters) {
+        try {
+            return parameters.jfrSettings.endsWith(".jfc")
+                    ? Configuration.create(Paths.get(parameters.jfrSettings))
+                    : Configuration.getConfiguration(parameters.jfrSettings);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown --jfr_settings: " + parameters.jfrSettings, e);
+        }
+    }
+
+    /**
+     * @return The --jfr_file of one point of a sweep, autotune or capacity
+     *         search, e.g. run-threads_8.jfr for run.jfr
+     */
+    public static String pointFile(String file, String point) {
+        String suffix = "-" + point.replaceAll("[^A-Za-z0-9.-]", "_");
+        int dot = file.lastIndexOf('.');
+        if (dot <= file.lastIndexOf('/') + 1) {
+            return file + suffix;
+        }
+        return file.substring(0, dot) + suffix + file.substring(dot);
+    }
+
+    /**
+     * Stop a recording started by {@link #startRecording} and write it to
+     * --jfr_file.
+     */
+    public static void stopRecording(Recording recording, BenchmarkParameters parameters) {
+        if (recording == null) {
+            return;
+        }
+        try {
+            recording.stop();
+            recording.dump(Paths.get(parameters.jfrFile));
+            System.out.println("JFR recording written to: " + parameters.jfrFile);
+        } catch (IOException e) {
+            System.err.println("Failed to write JFR recording to " + parameters.jfrFile + ": " + e.getMessage());
+        } finally {
+            recording.close();
+        }
+    }
+}
@@ -12,15 +12,39 @@ public class BenchmarkParameters {
     @Option(names = "--client", description = "Client type (grpc, http, gcs-json, gcs-grpc)", defaultValue = "grpc")
     public String client;
 
-    @Option(names = "--operation", description = "Operation type (read, random-read, write)", defaultValue = "read")
+    @Option(names = "--operation", description = "Operation type (read, random-read, write, stat, list, delete, update, provision)", defaultValue = "read")
     public String operation;
 
+    @Option(names = "--workload", description = "JSON workload file with a weighted operation mix (overrides --operation)", defaultValue = "")
+    public String workload;
+
+    @Option(names = "--trace_replay", description = "CSV access trace to replay (overrides --operation, --workload and --runs)", defaultValue = "")
+    public String traceReplay;
+
+    @Option(names = "--trace_speed", description = "Replay speed relative to the trace timestamps (0 = as fast as possible)", defaultValue = "1.0")
+    public double traceSpeed;
+
+    @Option(names = "--trace_record", description = "Record the operations of the run to this CSV access trace", defaultValue = "")
+    public String traceRecord;
+
     @Option(names = "--runs", description = "The number of times to run the operation", defaultValue = "1")
     public int runs;
 
     @Option(names = "--warmups", description = "The number of warm-up calls to be excluded for the report", defaultValue = "0")
     public int warmups;
 
+    @Option(names = "--adaptive_warmup", description = "Warm up until windowed throughput and latency settle instead of running --warmups operations")
+    public boolean adaptiveWarmup;
+
+    @Option(names = "--warmup_window_ms", description = "Window length of --adaptive_warmup and of the drift check", defaultValue = "1000")
+    public long warmupWindowMs;
+
+    @Option(names = "--warmup_cv", description = "Coefficient of variation below which --adaptive_warmup considers the windows steady", defaultValue = "0.1")
+    public double warmupCv;
+
+    @Option(names = "--warmup_max_sec", description = "Longest --adaptive_warmup before measuring anyway", defaultValue = "300")
+    public long warmupMaxSec;
+
     @Option(names = "--threads", description = "The number of threads running operations", defaultValue = "1")
     public int threads;
 
@@ -33,6 +57,18 @@ public class BenchmarkParameters {
     @Option(names = "--object_stop", description = "An integer number specifying at which position to end", defaultValue = "0")
     public int objectStop;
 
+    @Option(names = "--key_distribution", description = "How objects are picked from the range: uniform, zipfian, hotset, sequential, scrambled", defaultValue = "uniform")
+    public String keyDistribution;
+
+    @Option(names = "--zipf_skew", description = "Skew exponent for zipfian and scrambled key distributions", defaultValue = "0.99")
+    public double zipfSkew;
+
+    @Option(names = "--hot_set_fraction", description = "Fraction of the objects in the hot set for the hotset key distribution", defaultValue = "0.2")
+    public double hotSetFraction;
+
+    @Option(names = "--hot_set_probability", description = "Fraction of operations that go to the hot set", defaultValue = "0.8")
+    public double hotSetProbability;
+
     @Option(names = "--chunk_size", description = "Chunk size for random-read and write", defaultValue = "-1")
     public long chunkSize;
 
@@ -42,9 +78,48 @@ public class BenchmarkParameters {
     @Option(names = "--read_limit", description = "Read limit for read", defaultValue = "-1")
     public long readLimit;
 
+    @Option(names = "--list_page_size", description = "Page size of list operations", defaultValue = "1000")
+    public int listPageSize;
+
+    @Option(names = "--list_prefix_depth", description = "Number of leading path components of the object name used as list prefix (0 = whole bucket)", defaultValue = "0")
+    public int listPrefixDepth;
+
+    @Option(names = "--reader_chunk_size", description = "ReadChannel chunk size for GCS client reads (0 = library default)", defaultValue = "0")
+    public int readerChunkSize;
+
+    @Option(names = "--read_buffer_size", description = "Size of the reusable direct buffer GCS client reads drain into", defaultValue = "1048576")
+    public int readBufferSize;
+
+    @Option(names = "--sink", description = "Where read bytes go (discard, copy, file, mmap)", defaultValue = "discard")
+    public String sink;
+
+    @Option(names = "--sink_path", description = "Directory for file and mmap sinks (Default: java.io.tmpdir)", defaultValue = "")
+    public String sinkPath;
+
+    @Option(names = "--sink_buffer_size", description = "Per-thread buffer size for copy and mmap sinks", defaultValue = "8388608")
+    public int sinkBufferSize;
+
     @Option(names = "--write_size", description = "Write size", defaultValue = "0")
     public long writeSize;
 
+    @Option(names = "--provision_sizes", description = "JSON size distribution of objects created by --operation=provision (default: --write_size)", defaultValue = "")
+    public String provisionSizes;
+
+    @Option(names = "--write_source", description = "Content of written objects (random, stream, mmap)", defaultValue = "random")
+    public String writeSource;
+
+    @Option(names = "--write_source_path", description = "Local file to stream from for --write_source=mmap", defaultValue = "")
+    public String writeSourcePath;
+
+    @Option(names = "--write_source_buffer_size", description = "Rotating buffer size for --write_source=stream", defaultValue = "16777216")
+    public int writeSourceBufferSize;
+
+    @Option(names = "--compression_ratio", description = "Target compression ratio of generated write data (1.0 = incompressible)", defaultValue = "1.0")
+    public double compressionRatio;
+
+    @Option(names = "--grpc_compression", description = "gRPC message compressor for requests (e.g. gzip). Default: none", defaultValue = "")
+    public String grpcCompression;
+
     @Option(names = "--timeout", description = "Timeout for the call in seconds (Default: none)", defaultValue = "0")
     public long timeout;
 
@@ -99,9 +174,15 @@ public class BenchmarkParameters {
     @Option(names = "--ssl_cert", description = "Path to the server SSL certification chain file", defaultValue = "")
     public String sslCert;
 
-    @Option(names = "--rr", description = "Use round_robin grpclb policy (otherwise pick_first)")
+    @Option(names = "--rr", description = "Use round_robin over all backend addresses (otherwise pick_first)")
     public boolean rr;
 
+    @Option(names = "--rr_addresses", description = "Comma-separated host:port backends for --rr (default: all DNS records of the endpoint)", defaultValue = "")
+    public String rrAddresses;
+
+    @Option(names = "--plaintext", description = "Use plaintext channels instead of TLS, e.g. for local test servers")
+    public boolean plaintext;
+
     @Option(names = "--td", description = "Use Traffic Director")
     public boolean td;
 
@@ -114,15 +195,81 @@ public class BenchmarkParameters {
     @Option(names = "--carg", description = "Parameter for cpolicy (e.g. pool uses this as the number of channels)", defaultValue = "0")
     public int carg;
 
-    @Option(names = "--ctest", description = "Test to get a list of peers from grpclb", defaultValue = "0")
+    @Option(names = "--ctest", description = "Run this many connection-establishment iterations, timing each phase", defaultValue = "0")
     public int ctest;
 
-    @Option(names = "--mtest", description = "Test to get metadata", defaultValue = "0")
+    @Option(names = "--preconnect", negatable = true, description = "Connect pool channels before each phase (use --no-preconnect to measure cold channels)", defaultValue = "true", fallbackValue = "true")
+    public boolean preconnect;
+
+    @Option(names = "--mtest", description = "Run this many metadata operations (stat, list and update in equal parts)", defaultValue = "0")
     public int mtest;
 
+    @Option(names = "--hedge", description = "Hedging policy for reads (none, fixed, p95)", defaultValue = "none")
+    public String hedge;
+
+    @Option(names = "--hedge_delay_ms", description = "Delay before sending a hedge read (initial delay for p95)", defaultValue = "50")
+    public long hedgeDelayMs;
+
+    @Option(names = "--metadata_cache", description = "Cache object size/generation instead of fetching metadata on every read")
+    public boolean metadataCache;
+
+    @Option(names = "--metadata_cache_size", description = "Maximum number of objects in the metadata cache", defaultValue = "100000")
+    public long metadataCacheSize;
+
+    @Option(names = "--metadata_cache_ttl_ms", description = "Time-to-live of metadata cache entries in ms (0 = no expiry)", defaultValue = "0")
+    public long metadataCacheTtlMs;
+
+    @Option(names = "--jfr_file", description = "Write a JDK Flight Recorder recording of the timed phase to this file", defaultValue = "")
+    public String jfrFile;
+
+    @Option(names = "--jfr_settings", description = "JFR configuration for --jfr_file (default, profile or a .jfc file)", defaultValue = "profile")
+    public String jfrSettings;
+
     @Option(names = "--channel_args", description = "Comma-separated list of gRPC channel arguments (key=value)")
     public String channelArgs;
 
+    @Option(names = "--transport", description = "Transport for the grpc client: network, or inprocess to serve synthetic objects from an in-process server with no sockets", defaultValue = "network")
+    public String transport;
+
+    @Option(names = "--inprocess_object_size", description = "Size of objects served by --transport=inprocess that were not written in the run", defaultValue = "8388608")
+    public long inprocessObjectSize;
+
+    @Option(names = "--io_threads", description = "Netty I/O threads in one event loop group shared by all channels of the pool (0 = gRPC default)", defaultValue = "0")
+    public int ioThreads;
+
+    @Option(names = "--callback_executor", description = "Executor for gRPC callbacks: default (cached pool per channel), shared (one fixed pool) or direct (run on the I/O thread)", defaultValue = "default")
+    public String callbackExecutor;
+
+    @Option(names = "--callback_threads", description = "Threads in the pool used by --callback_executor=shared (0 = number of cores)", defaultValue = "0")
+    public int callbackThreads;
+
+    @Option(names = "--sweep", description = "Run every combination of option values in this JVM, e.g. threads=1,8,32;cpolicy=perthread,pool", defaultValue = "")
+    public String sweep;
+
+    @Option(names = "--autotune", description = "Search --threads, --carg and --chunk_size for the highest throughput (throughput) or lowest CPU per GiB (cpu)", defaultValue = "")
+    public String autotune;
+
+    @Option(names = "--autotune_budget_sec", description = "Time budget of --autotune in seconds", defaultValue = "600")
+    public long autotuneBudgetSec;
+
+    @Option(names = "--rate", description = "Open-loop rate of the timed phase in operations per second; latency counts from when each operation was due (0 = closed loop)", defaultValue = "0")
+    public double rate;
+
+    @Option(names = "--capacity", description = "Search the highest --rate that meets --slo_p99_ms and --slo_error_rate")
+    public boolean capacity;
+
+    @Option(names = "--capacity_start_rate", description = "First rate of --capacity in operations per second", defaultValue = "10")
+    public double capacityStartRate;
+
+    @Option(names = "--capacity_step_sec", description = "Duration of each --capacity probe in seconds", defaultValue = "10")
+    public long capacityStepSec;
+
+    @Option(names = "--slo_p99_ms", description = "p99 latency SLO of --capacity in ms", defaultValue = "100")
+    public double sloP99Ms;
+
+    @Option(names = "--slo_error_rate", description = "Failed operation SLO of --capacity in percent", defaultValue = "1.0")
+    public double sloErrorRate;
+
     @Option(names = "--help", usageHelp = true, description = "display this help message")
     boolean help;
 }
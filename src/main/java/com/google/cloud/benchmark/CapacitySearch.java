@@ -0,0 +1,156 @@
+package com.google.cloud.benchmark;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import picocli.CommandLine;
+
+/**
+ * Finds the highest open-loop rate that still meets a latency and error SLO
+ * (--capacity). Every probe is a normal run at a fixed --rate, long enough
+ * to last about --capacity_step_sec. The rate doubles from
+ * --capacity_start_rate until a probe breaks the SLO, then the knee is
+ * bisected between the last good and the first bad rate.
+ */
+public class CapacitySearch {
+    private static final double RAMP_FACTOR = 2.0;
+    /** Bisection stops once the bad rate is within this of the good one */
+    private static final double PRECISION = 0.05;
+    private static final int MAX_PROBES = 24;
+
+    /**
+     * Result of one probe.
+     */
+    private static class Probe {
+        final double offeredRate;
+        final double achievedRate;
+        final double throughputMibps;
+        final double p50Ms;
+        final double p99Ms;
+        final double errorPercent;
+        final boolean meetsSlo;
+
+        /**
+         * Rates are over the open-loop timed phase of the probe, from the
+         * first due time to the last completion, without its warmup, prefill
+         * or preconnect.
+         */
+        Probe(double offeredRate, Main.RunResult result, double sloP99Ms, double sloErrorPercent) {
+            StatWatcher watcher = result.watcher;
+            int operations = watcher.getOperations().size();
+            this.offeredRate = offeredRate;
+            this.achievedRate = result.durationMs == 0 ? 0.0
+                    : watcher.getLatencies().size() * 1000.0 / result.durationMs;
+            this.throughputMibps = result.throughputMibps();
+            this.p50Ms = ReportWriter.calculatePercentile(watcher.getLatencies(), 50);
+            this.p99Ms = ReportWriter.calculatePercentile(watcher.getLatencies(), 99);
+            this.errorPercent = operations == 0 ? 100.0
+                    : 100.0 * (operations - watcher.getLatencies().size()) / operations;
+            this.meetsSlo = operations > 0 && p99Ms <= sloP99Ms && errorPercent <= sloErrorPercent;
+        }
+    }
+
+    private final CommandLine cmd;
+    private final String[] args;
+    private final BenchmarkParameters parameters;
+    private final List<Probe> probes = new ArrayList<>();
+
+    private CapacitySearch(CommandLine cmd, String[] args, BenchmarkParameters parameters) {
+        this.cmd = cmd;
+        this.args = args;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Run the search for --capacity and print the capacity and the latency
+     * curve.
+     */
+    public static void run(CommandLine cmd, String[] args, BenchmarkParameters parameters) {
+        if (!parameters.sweep.isEmpty() || !parameters.autotune.isEmpty() || !parameters.traceReplay.isEmpty()) {
+            throw new CommandLine.ParameterException(cmd,
+                    "--capacity cannot be combined with --sweep, --autotune or --trace_replay");
+        }
+        if (parameters.capacityStartRate <= 0 || parameters.capacityStepSec <= 0 || parameters.sloP99Ms <= 0) {
+            throw new CommandLine.ParameterException(cmd,
+                    "--capacity_start_rate, --capacity_step_sec and --slo_p99_ms must be positive");
+        }
+        new CapacitySearch(cmd, args, parameters).search();
+    }
+
+    private void search() {
+        System.out.printf("Capacity search: p99 <= %.1f ms, errors <= %.1f%%, %d s per step%n",
+                parameters.sloP99Ms, parameters.sloErrorRate, parameters.capacityStepSec);
+
+        // Ramp up until the SLO breaks
+        double good = 0;
+        double bad = 0;
+        double rate = parameters.capacityStartRate;
+        while (probes.size() < MAX_PROBES) {
+            if (probe(rate).meetsSlo) {
+                good = rate;
+                rate *= RAMP_FACTOR;
+            } else {
+                bad = rate;
+                break;
+            }
+        }
+        // Bisect to the knee
+        while (bad > 0 && (bad - good) / bad > PRECISION && probes.size() < MAX_PROBES) {
+            double middle = (good + bad) / 2;
+            if (probe(middle).meetsSlo) {
+                good = middle;
+            } else {
+                bad = middle;
+            }
+        }
+        if (bad == 0) {
+            System.err.println("WARN: SLO still met at " + rate / RAMP_FACTOR + " ops/s after " + MAX_PROBES
+                    + " probes; capacity is higher");
+        }
+        printSummary();
+    }
+
+    private Probe probe(double rate) {
+        Map<String, String> point = new LinkedHashMap<>();
+        // Parsed back as --rate, so no locale-specific decimal separator
+        point.put("rate", String.format(Locale.ROOT, "%.2f", rate));
+        point.put("runs", String.valueOf(Math.max(1, (long) Math.ceil(rate * parameters.capacityStepSec))));
+        System.out.printf("%n=== Capacity probe %d: %.2f ops/s ===%n", probes.size() + 1, rate);
+        // Leave the garbage of the previous probe out of this one
+        System.gc();
+        Probe probe = new Probe(rate, Main.runBenchmark(cmd, ParameterSweep.apply(args, point), point),
+                parameters.sloP99Ms, parameters.sloErrorRate);
+        probes.add(probe);
+        System.out.printf("Capacity probe at %.2f ops/s: p99 %.2f ms, errors %.1f%% -> %s%n", rate, probe.p99Ms,
+                probe.errorPercent, probe.meetsSlo ? "meets SLO" : "breaks SLO");
+        return probe;
+    }
+
+    private void printSummary() {
+        List<Probe> curve = new ArrayList<>(probes);
+        curve.sort(Comparator.comparingDouble(p -> p.offeredRate));
+        System.out.println();
+        System.out.println("Latency vs. Load:");
+        System.out.printf("  %12s %12s %10s %10s %10s %8s  %s%n", "offered/s", "achieved/s", "MiB/s", "p50 ms",
+                "p99 ms", "errors", "SLO");
+        Probe best = null;
+        for (Probe probe : curve) {
+            System.out.printf("  %12.2f %12.2f %10.2f %10.2f %10.2f %7.1f%%  %s%n", probe.offeredRate,
+                    probe.achievedRate, probe.throughputMibps, probe.p50Ms, probe.p99Ms, probe.errorPercent,
+                    probe.meetsSlo ? "ok" : "breach");
+            if (probe.meetsSlo && (best == null || probe.offeredRate > best.offeredRate)) {
+                best = probe;
+            }
+        }
+        if (best == null) {
+            System.err.printf("WARN: Even %.2f ops/s breaks the SLO; lower --capacity_start_rate%n",
+                    parameters.capacityStartRate);
+            return;
+        }
+        System.out.printf("Max sustainable rate: %.2f ops/s, %.2f MiB/s (p99 %.2f ms, errors %.1f%%)%n",
+                best.achievedRate, best.throughputMibps, best.p99Ms, best.errorPercent);
+    }
+}
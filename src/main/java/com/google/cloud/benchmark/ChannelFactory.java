@@ -1,14 +1,27 @@
 package com.google.cloud.benchmark;
 
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Factory for creating gRPC channels with custom configuration.
  */
 public class ChannelFactory {
+    static final String HOST = "storage.googleapis.com";
+    static final int PORT = 443;
+
+    private static ChannelSettings settings;
+    private static String settingsArgs;
 
     /**
      * Create a channel with the specified parameters.
@@ -18,56 +31,211 @@ public class ChannelFactory {
      * @return Configured ManagedChannel
      */
     public static ManagedChannel createChannel(BenchmarkParameters parameters, boolean logArgs) {
-        ManagedChannelBuilder<?> channelBuilder = ManagedChannelBuilder.forAddress("storage.googleapis.com", 443)
-                .useTransportSecurity();
+        return createChannel(parameters, logArgs, new ClientInterceptor[0]);
+    }
+
+    /**
+     * Create a channel with the specified parameters and interceptors.
+     * 
+     * @param parameters   Benchmark parameters containing channel args
+     * @param logArgs      Whether to log applied arguments
+     * @param interceptors Interceptors applied to every call on the channel
+     * @return Configured ManagedChannel
+     */
+    public static ManagedChannel createChannel(BenchmarkParameters parameters, boolean logArgs,
+            ClientInterceptor... interceptors) {
+        if ("inprocess".equalsIgnoreCase(parameters.transport)) {
+            InProcessChannelBuilder inProcessBuilder = InProcessStorageServer.channelBuilder();
+            inProcessBuilder.intercept(interceptors);
+            getSettings(parameters).applyExecutor(inProcessBuilder);
+            return inProcessBuilder.build();
+        }
+
+        NettyChannelBuilder channelBuilder;
+        if (parameters.rr) {
+            channelBuilder = NettyChannelBuilder.forTarget(MultiAddressNameResolver.target(parameters))
+                    .defaultLoadBalancingPolicy("round_robin");
+        } else {
+            channelBuilder = NettyChannelBuilder.forAddress(HOST, PORT);
+        }
+        if (parameters.plaintext) {
+            channelBuilder.usePlaintext();
+        } else {
+            channelBuilder.useTransportSecurity();
+        }
+        channelBuilder.intercept(interceptors);
+
+        ChannelSettings settings = getSettings(parameters);
+        if (logArgs && !settings.describe().isEmpty()) {
+            System.out.println("Applying channel args: " + settings.describe());
+        }
+        EventLoopGroup ownedGroup = settings.apply(channelBuilder);
+
+        ManagedChannel channel = channelBuilder.build();
+        return ownedGroup != null ? new GroupOwningChannel(channel, ownedGroup) : channel;
+    }
+
+    /**
+     * @return Settings parsed from --channel_args and the thread topology
+     *         flags, shared by every channel
+     */
+    public static synchronized ChannelSettings getSettings(BenchmarkParameters parameters) {
+        String key = (parameters.channelArgs == null ? "" : parameters.channelArgs)
+                + "|" + parameters.ioThreads + "|" + parameters.callbackExecutor + "|" + parameters.callbackThreads;
+        if (settings == null || !key.equals(settingsArgs)) {
+            if (settings != null) {
+                // A new sweep point; channels of the previous one are shut down
+                settings.shutdown();
+            }
+            settings = ChannelSettings.fromParameters(parameters);
+            settingsArgs = key;
+        }
+        return settings;
+    }
 
-        if (parameters.channelArgs != null && !parameters.channelArgs.isEmpty()) {
-            if (logArgs) {
-                System.out.println("Applying channel args: " + parameters.channelArgs);
+    /**
+     * Start connecting all channels at once and wait for them to become
+     * ready.
+     * 
+     * @param channels  Channels to connect
+     * @param timeoutMs How long to wait for all of them
+     * @return Number of channels that became ready
+     */
+    public static int connect(List<ManagedChannel> channels, long timeoutMs) {
+        long start = System.nanoTime();
+        for (ManagedChannel channel : channels) {
+            channel.getState(true);
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        int ready = 0;
+        for (ManagedChannel channel : channels) {
+            if (awaitReady(channel, deadline)) {
+                ready++;
             }
+        }
+        System.out.printf("Pre-connected %d/%d channels in %.1f ms%n", ready, channels.size(),
+                (System.nanoTime() - start) / 1e6);
+        return ready;
+    }
 
-            if (channelBuilder instanceof NettyChannelBuilder) {
-                NettyChannelBuilder nettyBuilder = (NettyChannelBuilder) channelBuilder;
-                String[] args = parameters.channelArgs.split(",");
-
-                for (String arg : args) {
-                    String[] parts = arg.split("=");
-                    if (parts.length == 2) {
-                        String key = parts[0].trim();
-                        String value = parts[1].trim();
-
-                        try {
-                            switch (key) {
-                                case "grpc.keepalive_time_ms":
-                                    nettyBuilder.keepAliveTime(Long.parseLong(value), TimeUnit.MILLISECONDS);
-                                    break;
-                                case "grpc.keepalive_timeout_ms":
-                                    nettyBuilder.keepAliveTimeout(Long.parseLong(value), TimeUnit.MILLISECONDS);
-                                    break;
-                                case "grpc.keepalive_permit_without_calls":
-                                    nettyBuilder.keepAliveWithoutCalls(
-                                            Boolean.parseBoolean(value) || "1".equals(value));
-                                    break;
-                                default:
-                                    if (logArgs) {
-                                        System.err.println("Unsupported channel arg: " + key);
-                                    }
-                            }
-                        } catch (Exception e) {
-                            if (logArgs) {
-                                System.err.println("Failed to apply channel arg " + key + ": " + e.getMessage());
-                            }
-                        }
-                    }
+    /**
+     * Wait until the channel is READY, asking it to connect when idle.
+     * 
+     * @param deadlineNanos System.nanoTime() deadline
+     * @return Whether the channel became ready in time
+     */
+    public static boolean awaitReady(ManagedChannel channel, long deadlineNanos) {
+        while (true) {
+            ConnectivityState state = channel.getState(true);
+            if (state == ConnectivityState.READY) {
+                return true;
+            }
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0 || state == ConnectivityState.SHUTDOWN) {
+                return false;
+            }
+            CountDownLatch changed = new CountDownLatch(1);
+            channel.notifyWhenStateChanged(state, changed::countDown);
+            try {
+                changed.await(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Channel with its own event loop group (netty.event_loop=per_channel).
+     * The group is shut down once the channel has terminated, so in-flight
+     * calls and the graceful GOAWAY still have their event loop.
+     */
+    private static class GroupOwningChannel extends ManagedChannel {
+        private final ManagedChannel delegate;
+        private final EventLoopGroup group;
+
+        GroupOwningChannel(ManagedChannel delegate, EventLoopGroup group) {
+            this.delegate = delegate;
+            this.group = group;
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            delegate.shutdown();
+            shutdownGroupWhenTerminated(false);
+            return this;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            delegate.shutdownNow();
+            shutdownGroupWhenTerminated(true);
+            return this;
+        }
+
+        private void shutdownGroupWhenTerminated(boolean now) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    delegate.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
-            } else {
-                if (logArgs) {
-                    System.err.println(
-                            "WARNING: Channel builder is not NettyChannelBuilder, cannot apply channel args.");
+                if (now) {
+                    group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+                } else {
+                    group.shutdownGracefully();
                 }
-            }
+            }, "channel-group-shutdown");
+            waiter.setDaemon(true);
+            waiter.start();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
         }
 
-        return channelBuilder.build();
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated() && group.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            return delegate.awaitTermination(timeout, unit)
+                    && group.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public ConnectivityState getState(boolean requestConnection) {
+            return delegate.getState(requestConnection);
+        }
+
+        @Override
+        public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+            delegate.notifyWhenStateChanged(source, callback);
+        }
+
+        @Override
+        public void resetConnectBackoff() {
+            delegate.resetConnectBackoff();
+        }
+
+        @Override
+        public void enterIdle() {
+            delegate.enterIdle();
+        }
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                CallOptions callOptions) {
+            return delegate.newCall(method, callOptions);
+        }
+
+        @Override
+        public String authority() {
+            return delegate.authority();
+        }
     }
 }
@@ -0,0 +1,329 @@
+package com.google.cloud.benchmark;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.UnpooledByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.WriteBufferWaterMark;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport settings parsed from --channel_args (comma-separated key=value).
+ * Supported keys:
+ *
+ * <pre>
+ * grpc.keepalive_time_ms                keepalive ping interval
+ * grpc.keepalive_timeout_ms             keepalive ping timeout
+ * grpc.keepalive_permit_without_calls   keepalive without active calls (0/1)
+ * grpc.http2.initial_window_size        initial HTTP/2 flow-control window, BDP tuning stays on
+ * grpc.http2.flow_control_window        fixed HTTP/2 flow-control window, BDP tuning off
+ * grpc.max_receive_message_length       max inbound message size
+ * grpc.max_metadata_size                max inbound metadata size
+ * netty.transport                       nio, epoll or auto (epoll when available)
+ * netty.event_loop                      shared (one group for all channels) or per_channel
+ * netty.event_loop_threads              threads per event loop group (0 = Netty default)
+ * netty.allocator                       pooled, unpooled or default
+ * netty.write_buffer_low                write buffer low water mark in bytes
+ * netty.write_buffer_high               write buffer high water mark in bytes
+ * </pre>
+ *
+ * Unknown keys and bad values are rejected when the first channel is built.
+ * The thread topology flags (--io_threads, --callback_executor,
+ * --callback_threads) are folded into the same settings so that every channel
+ * of a pool shares one event loop group and one callback executor.
+ */
+public class ChannelSettings {
+    private final Map<String, String> applied = new LinkedHashMap<>();
+
+    private Long keepAliveTimeMs;
+    private Long keepAliveTimeoutMs;
+    private Boolean keepAliveWithoutCalls;
+    private Integer initialWindowSize;
+    private Integer flowControlWindow;
+    private Integer maxInboundMessageSize;
+    private Integer maxInboundMetadataSize;
+    private String transport = "default";
+    private String eventLoop = "default";
+    private int eventLoopThreads = 0;
+    private String allocator = "default";
+    private Integer writeBufferLow;
+    private Integer writeBufferHigh;
+    private String callbackExecutor = "default";
+    private int callbackThreads = 0;
+
+    private EventLoopGroup sharedGroup;
+    private ExecutorService sharedExecutor;
+
+    /**
+     * Parse --channel_args and apply the thread topology flags on top.
+     *
+     * @throws IllegalArgumentException on unknown keys, bad values or
+     *                                  conflicting settings
+     */
+    public static ChannelSettings fromParameters(BenchmarkParameters parameters) {
+        ChannelSettings settings = parse(parameters.channelArgs);
+        if (parameters.ioThreads < 0) {
+            throw new IllegalArgumentException("--io_threads must not be negative");
+        }
+        if (parameters.ioThreads > 0) {
+            if (settings.eventLoopThreads > 0 || "per_channel".equals(settings.eventLoop)) {
+                throw new IllegalArgumentException(
+                        "--io_threads conflicts with netty.event_loop_threads and netty.event_loop=per_channel");
+            }
+            settings.eventLoop = "shared";
+            settings.eventLoopThreads = parameters.ioThreads;
+            settings.applied.put("io_threads", String.valueOf(parameters.ioThreads));
+        }
+        String executor = parameters.callbackExecutor == null ? "default"
+                : parameters.callbackExecutor.toLowerCase();
+        settings.callbackExecutor = oneOf("--callback_executor", executor, "default", "shared", "direct");
+        if ("shared".equals(executor)) {
+            settings.callbackThreads = parameters.callbackThreads > 0
+                    ? parameters.callbackThreads
+                    : Runtime.getRuntime().availableProcessors();
+            settings.applied.put("callback_executor", "shared");
+            settings.applied.put("callback_threads", String.valueOf(settings.callbackThreads));
+        } else if ("direct".equals(executor)) {
+            settings.applied.put("callback_executor", "direct");
+        }
+        return settings;
+    }
+
+    /**
+     * Parse --channel_args.
+     *
+     * @throws IllegalArgumentException on unknown keys or bad values
+     */
+    public static ChannelSettings parse(String channelArgs) {
+        ChannelSettings settings = new ChannelSettings();
+        if (channelArgs == null || channelArgs.isEmpty()) {
+            return settings;
+        }
+        for (String arg : channelArgs.split(",")) {
+            String[] parts = arg.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Channel arg must be key=value: " + arg);
+            }
+            String key = parts[0].trim();
+            String value = parts[1].trim();
+            try {
+                settings.set(key, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for channel arg " + key + ": " + value, e);
+            }
+            settings.applied.put(key, value);
+        }
+        if ((settings.writeBufferLow == null) != (settings.writeBufferHigh == null)) {
+            throw new IllegalArgumentException("netty.write_buffer_low and netty.write_buffer_high go together");
+        }
+        if (settings.writeBufferLow != null
+                && (settings.writeBufferLow < 0 || settings.writeBufferLow > settings.writeBufferHigh)) {
+            throw new IllegalArgumentException("netty.write_buffer_low must be between 0 and netty.write_buffer_high");
+        }
+        return settings;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "grpc.keepalive_time_ms":
+                keepAliveTimeMs = Long.parseLong(value);
+                break;
+            case "grpc.keepalive_timeout_ms":
+                keepAliveTimeoutMs = Long.parseLong(value);
+                break;
+            case "grpc.keepalive_permit_without_calls":
+                keepAliveWithoutCalls = Boolean.parseBoolean(value) || "1".equals(value);
+                break;
+            case "grpc.http2.initial_window_size":
+                initialWindowSize = Integer.parseInt(value);
+                break;
+            case "grpc.http2.flow_control_window":
+                flowControlWindow = Integer.parseInt(value);
+                break;
+            case "grpc.max_receive_message_length":
+                maxInboundMessageSize = Integer.parseInt(value);
+                break;
+            case "grpc.max_metadata_size":
+                maxInboundMetadataSize = Integer.parseInt(value);
+                break;
+            case "netty.transport":
+                transport = oneOf(key, value, "nio", "epoll", "auto");
+                break;
+            case "netty.event_loop":
+                eventLoop = oneOf(key, value, "shared", "per_channel");
+                break;
+            case "netty.event_loop_threads":
+                eventLoopThreads = Integer.parseInt(value);
+                break;
+            case "netty.allocator":
+                allocator = oneOf(key, value, "pooled", "unpooled", "default");
+                break;
+            case "netty.write_buffer_low":
+                writeBufferLow = Integer.parseInt(value);
+                break;
+            case "netty.write_buffer_high":
+                writeBufferHigh = Integer.parseInt(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported channel arg: " + key);
+        }
+    }
+
+    private static String oneOf(String key, String value, String... allowed) {
+        for (String option : allowed) {
+            if (option.equals(value)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported value for " + key + ": " + value);
+    }
+
+    /**
+     * Apply the settings to a channel builder.
+     *
+     * @return An event loop group created for this channel alone, which the
+     *         caller must shut down with the channel, or null
+     */
+    public EventLoopGroup apply(NettyChannelBuilder builder) {
+        if (keepAliveTimeMs != null) {
+            builder.keepAliveTime(keepAliveTimeMs, TimeUnit.MILLISECONDS);
+        }
+        if (keepAliveTimeoutMs != null) {
+            builder.keepAliveTimeout(keepAliveTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        if (keepAliveWithoutCalls != null) {
+            builder.keepAliveWithoutCalls(keepAliveWithoutCalls);
+        }
+        if (initialWindowSize != null) {
+            builder.initialFlowControlWindow(initialWindowSize);
+        }
+        if (flowControlWindow != null) {
+            builder.flowControlWindow(flowControlWindow);
+        }
+        if (maxInboundMessageSize != null) {
+            builder.maxInboundMessageSize(maxInboundMessageSize);
+        }
+        if (maxInboundMetadataSize != null) {
+            builder.maxInboundMetadataSize(maxInboundMetadataSize);
+        }
+        EventLoopGroup ownedGroup = null;
+        if (!"default".equals(transport) || !"default".equals(eventLoop) || eventLoopThreads > 0) {
+            EventLoopGroup group;
+            if ("per_channel".equals(eventLoop)) {
+                group = newEventLoopGroup();
+                ownedGroup = group;
+            } else {
+                group = sharedEventLoopGroup();
+            }
+            builder.eventLoopGroup(group);
+            builder.channelType(useEpoll() ? EpollSocketChannel.class : NioSocketChannel.class);
+        }
+        if ("pooled".equals(allocator)) {
+            builder.withOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        } else if ("unpooled".equals(allocator)) {
+            builder.withOption(ChannelOption.ALLOCATOR, UnpooledByteBufAllocator.DEFAULT);
+        }
+        if (writeBufferLow != null) {
+            builder.withOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                    new WriteBufferWaterMark(writeBufferLow, writeBufferHigh));
+        }
+        applyExecutor(builder);
+        return ownedGroup;
+    }
+
+    /**
+     * Apply only the callback executor, for channels without a Netty
+     * transport (--transport=inprocess).
+     */
+    public void applyExecutor(ManagedChannelBuilder<?> builder) {
+        if ("direct".equals(callbackExecutor)) {
+            // Callbacks only hand data to waiting threads, so they are safe
+            // to run on the event loop and save a thread hop per message
+            builder.directExecutor();
+        } else if ("shared".equals(callbackExecutor)) {
+            builder.executor(sharedExecutor());
+        }
+    }
+
+    private boolean useEpoll() {
+        if ("epoll".equals(transport) && !Epoll.isAvailable()) {
+            throw new IllegalStateException("netty.transport=epoll is not available: " + Epoll.unavailabilityCause());
+        }
+        return "epoll".equals(transport) || ("auto".equals(transport) && Epoll.isAvailable());
+    }
+
+    /**
+     * One group for all channels. Threads are daemons so that groups the
+     * channels do not own never keep the JVM alive.
+     */
+    private synchronized EventLoopGroup sharedEventLoopGroup() {
+        if (sharedGroup == null) {
+            sharedGroup = newEventLoopGroup();
+        }
+        return sharedGroup;
+    }
+
+    private synchronized ExecutorService sharedExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = Executors.newFixedThreadPool(callbackThreads, new ThreadFactoryBuilder()
+                    .setNameFormat("gcs-bench-callback-%d")
+                    .setDaemon(true)
+                    .build());
+        }
+        return sharedExecutor;
+    }
+
+    /**
+     * Release the shared event loop group and callback pool once no channel
+     * uses them any more.
+     */
+    synchronized void shutdown() {
+        if (sharedGroup != null) {
+            sharedGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+            sharedGroup = null;
+        }
+        if (sharedExecutor != null) {
+            sharedExecutor.shutdown();
+            sharedExecutor = null;
+        }
+    }
+
+    private EventLoopGroup newEventLoopGroup() {
+        if (useEpoll()) {
+            return new EpollEventLoopGroup(eventLoopThreads, new DefaultThreadFactory("gcs-bench-epoll", true));
+        }
+        return new NioEventLoopGroup(eventLoopThreads, new DefaultThreadFactory("gcs-bench-nio", true));
+    }
+
+    /**
+     * @return The applied settings as key=value pairs separated by
+     *         semicolons, or empty if none were given
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : applied.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        if ("auto".equals(transport)) {
+            sb.append(sb.length() > 0 ? ";" : "").append("netty.transport.resolved=")
+                    .append(useEpoll() ? "epoll" : "nio");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,228 @@
+package com.google.cloud.benchmark;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.storage.v2.GetObjectRequest;
+import com.google.storage.v2.StorageGrpc;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.auth.MoreCallCredentials;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Connection-establishment benchmark (--ctest=N). Every iteration starts
+ * from scratch and times each phase of getting to a first RPC:
+ *
+ * <ul>
+ * <li>dns: resolving the endpoint, with the JVM address cache disabled</li>
+ * <li>tcp: TCP connect to the first resolved address</li>
+ * <li>tls: TLS handshake negotiating h2 over ALPN (skipped with --plaintext)</li>
+ * <li>h2_settings: HTTP/2 preface until the server SETTINGS frame</li>
+ * <li>channel_ready: a ChannelFactory channel going from idle to READY</li>
+ * <li>first_rpc: the first GetObject on that ready channel</li>
+ * </ul>
+ *
+ * The first four phases run on a probe socket, since gRPC does not expose
+ * them separately; channel_ready is the same sequence done by gRPC itself.
+ * The probe connects to the endpoint the channel uses, or to the first
+ * --rr_addresses backend with --rr.
+ * Each phase is recorded as its own operation type in the watcher.
+ */
+public class ConnectionTest implements BenchmarkRunner {
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final byte[] HTTP2_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY_SETTINGS_FRAME = {0, 0, 0, 4, 0, 0, 0, 0, 0};
+    private static final int FRAME_TYPE_SETTINGS = 4;
+    private static final int FLAG_ACK = 1;
+
+    private final BenchmarkParameters parameters;
+    private final RunnerWatcher watcher;
+    private final ClientInterceptor[] interceptors;
+    private final InetSocketAddress target;
+
+    public ConnectionTest(BenchmarkParameters parameters, RunnerWatcher watcher, ClientInterceptor... interceptors) {
+        this.parameters = parameters;
+        this.watcher = watcher;
+        this.interceptors = interceptors;
+        this.target = parameters.rr && !parameters.rrAddresses.isEmpty()
+                ? MultiAddressNameResolver.configuredAddresses(parameters).get(0)
+                : InetSocketAddress.createUnresolved(ChannelFactory.HOST, ChannelFactory.PORT);
+    }
+
+    /**
+     * Turn off the JVM address cache so every iteration pays for its own
+     * lookup. The JVM reads these settings once, on its first lookup, so this
+     * must run before anything resolves a name.
+     */
+    static void disableAddressCache() {
+        Security.setProperty("networkaddress.cache.ttl", "0");
+        Security.setProperty("networkaddress.cache.negative.ttl", "0");
+    }
+
+    @Override
+    public void run() {
+        GoogleCredentials credentials = loadCredentials();
+        System.out.printf("Running connection test against %s:%d%s, %d iterations...%n",
+                target.getHostString(), target.getPort(), parameters.plaintext ? " (plaintext)" : "",
+                parameters.ctest);
+
+        watcher.notifyTimedPhaseStarted();
+        for (int i = 0; i < parameters.ctest; i++) {
+            try {
+                probe();
+            } catch (IOException e) {
+                System.err.println("Connection probe failed: " + e.getMessage());
+            }
+            connectChannel(credentials);
+        }
+        watcher.notifyTimedPhaseEnded();
+    }
+
+    private void probe() throws IOException {
+        long start = System.nanoTime();
+        InetAddress address;
+        try {
+            address = InetAddress.getAllByName(target.getHostString())[0];
+        } catch (IOException e) {
+            record("dns", start, false, e);
+            throw e;
+        }
+        record("dns", start, true, null);
+
+        start = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(address, target.getPort()), CONNECT_TIMEOUT_MS);
+            } catch (IOException e) {
+                record("tcp", start, false, e);
+                throw e;
+            }
+            record("tcp", start, true, null);
+
+            // Plaintext channels speak HTTP/2 with prior knowledge, without TLS
+            Socket h2 = socket;
+            if (!parameters.plaintext) {
+                start = System.nanoTime();
+                try {
+                    // The channel authority is the endpoint, also for --rr backends
+                    SSLSocket tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                            .createSocket(socket, ChannelFactory.HOST, target.getPort(), true);
+                    SSLParameters sslParameters = tls.getSSLParameters();
+                    sslParameters.setApplicationProtocols(new String[] {"h2"});
+                    tls.setSSLParameters(sslParameters);
+                    tls.startHandshake();
+                    h2 = tls;
+                } catch (IOException e) {
+                    record("tls", start, false, e);
+                    throw e;
+                }
+                record("tls", start, true, null);
+            }
+
+            start = System.nanoTime();
+            try {
+                if (h2 instanceof SSLSocket && !"h2".equals(((SSLSocket) h2).getApplicationProtocol())) {
+                    throw new IOException("Server did not negotiate h2");
+                }
+                awaitServerSettings(h2);
+            } catch (IOException e) {
+                record("h2_settings", start, false, e);
+                throw e;
+            }
+            record("h2_settings", start, true, null);
+            h2.close();
+        }
+    }
+
+    private static void awaitServerSettings(Socket socket) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(HTTP2_PREFACE);
+        out.write(EMPTY_SETTINGS_FRAME);
+        out.flush();
+
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] header = new byte[9];
+        while (true) {
+            in.readFully(header);
+            int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+            in.readFully(new byte[length]);
+            if (header[3] == FRAME_TYPE_SETTINGS && (header[4] & FLAG_ACK) == 0) {
+                return;
+            }
+        }
+    }
+
+    private void connectChannel(GoogleCredentials credentials) {
+        ManagedChannel channel = ChannelFactory.createChannel(parameters, false, interceptors);
+        try {
+            long start = System.nanoTime();
+            boolean ready = ChannelFactory.awaitReady(channel,
+                    start + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MS));
+            record("channel_ready", start, ready, null);
+            if (!ready) {
+                return;
+            }
+
+            StorageGrpc.StorageBlockingStub stub = StorageGrpc.newBlockingStub(channel);
+            if (credentials != null) {
+                stub = stub.withCallCredentials(MoreCallCredentials.from(credentials));
+            }
+            start = System.nanoTime();
+            try {
+                stub.getObject(GetObjectRequest.newBuilder()
+                        .setBucket("projects/_/buckets/" + parameters.bucket)
+                        .setObject(parameters.object)
+                        .build());
+                record("first_rpc", start, true, null);
+            } catch (StatusRuntimeException e) {
+                // A missing object still measures a full round trip
+                record("first_rpc", start, e.getStatus().getCode() == Status.Code.NOT_FOUND, e);
+            }
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    private void record(String phase, long startNanos, boolean success, Exception error) {
+        double latencyMs = (System.nanoTime() - startNanos) / 1_000_000.0;
+        String errorCode = "";
+        String errorMessage = "";
+        if (!success) {
+            errorCode = error != null ? error.getClass().getSimpleName() : "Timeout";
+            errorMessage = error != null && error.getMessage() != null ? error.getMessage() : "";
+        }
+        watcher.notifyCompleted(phase, 0, 0, target.getHostString(), parameters.object, latencyMs, 0, success,
+                errorCode, errorMessage, new ArrayList<>());
+    }
+
+    /**
+     * Load and refresh credentials up front so the token fetch is not part
+     * of any first RPC.
+     */
+    private GoogleCredentials loadCredentials() {
+        if ("insecure".equalsIgnoreCase(parameters.cred)) {
+            return null;
+        }
+        try {
+            GoogleCredentials credentials = GoogleCredentials.getApplicationDefault();
+            credentials.refreshIfExpired();
+            return credentials;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load credentials", e);
+        }
+    }
+}
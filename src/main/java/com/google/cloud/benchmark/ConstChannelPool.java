@@ -1,11 +1,10 @@
 package com.google.cloud.benchmark;
 
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.storage.v2.StorageGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
-import io.grpc.auth.MoreCallCredentials;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.function.Supplier;
 
 /**
@@ -26,15 +25,13 @@ public class ConstChannelPool implements StorageStubProvider {
 
     @Override
     public StubHolder getStub() {
-        StorageGrpc.StorageBlockingStub blockingStub = StorageGrpc.newBlockingStub(channel);
-        StorageGrpc.StorageStub asyncStub = StorageGrpc.newStub(channel);
-
-        if (cachedCredentials != null) {
-            blockingStub = blockingStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
-            asyncStub = asyncStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
-        }
+        return StorageStubProvider.createStubHolder(channel, cachedCredentials, parameters);
+    }
 
-        return new StubHolder(blockingStub, asyncStub, channel);
+    @Override
+    public StubHolder getStub(ManagedChannel exclude) {
+        // Only one channel exists for this policy
+        return getStub();
     }
 
     @Override
@@ -52,6 +49,11 @@ public class ConstChannelPool implements StorageStubProvider {
         }
     }
 
+    @Override
+    public void preconnect(int threads, long timeoutMs) {
+        ChannelFactory.connect(Collections.singletonList(channel), timeoutMs);
+    }
+
     @Override
     public void shutdown() {
         if (channel != null) {
@@ -0,0 +1,141 @@
+package com.google.cloud.benchmark;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates the objects read benchmarks run against (--operation=provision).
+ * Every object of the --object_format key range is written in parallel
+ * through the selected client. Sizes come from --provision_sizes and are
+ * seeded by object name, so re-running skips objects that already exist
+ * with the right size.
+ */
+public class DatasetProvisioner {
+
+    /**
+     * Writes one object through the runner's client.
+     */
+    public interface Writer {
+        /**
+         * @return Bytes written
+         */
+        long write(String objectName, Operation operation) throws Exception;
+    }
+
+    private final BenchmarkParameters parameters;
+    private final RunnerWatcher watcher;
+    private final ObjectMetadataCache.Loader metadata;
+    private final Writer writer;
+    private final SizeDistribution sizes;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    public DatasetProvisioner(BenchmarkParameters parameters, RunnerWatcher watcher,
+            ObjectMetadataCache.Loader metadata, Writer writer) {
+        this.parameters = parameters;
+        this.watcher = watcher;
+        this.metadata = metadata;
+        this.writer = writer;
+        this.sizes = sizeDistribution(parameters);
+    }
+
+    /**
+     * @return Distribution of the provisioned object sizes
+     */
+    public static SizeDistribution sizeDistribution(BenchmarkParameters parameters) {
+        if (parameters.provisionSizes.isEmpty() && parameters.writeSize <= 0) {
+            throw new IllegalArgumentException("--operation=provision needs --write_size or --provision_sizes");
+        }
+        return SizeDistributions.fromJson(parameters.provisionSizes, parameters.writeSize);
+    }
+
+    /**
+     * Size of an object, the same on every run for the same name. The seed is
+     * a murmur3 hash of the whole name: Random seeded with adjacent values,
+     * such as the hashCode of obj-1 and obj-2, returns almost the same first
+     * double, so every name would get about the same size.
+     */
+    public long sizeOf(String objectName) {
+        long seed = Hashing.murmur3_128().hashString(objectName, StandardCharsets.UTF_8).asLong();
+        return sizes.sample(new Random(seed));
+    }
+
+    public void run() {
+        List<String> names = ObjectResolver.allNames(parameters);
+        System.out.println("Provisioning " + names.size() + " objects with " + parameters.threads + " threads...");
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parameters.threads),
+                new ThreadFactoryBuilder().setNameFormat(SchedulerStats.WORKER_THREAD_PREFIX + "%d").build());
+        watcher.notifyTimedPhaseStarted();
+        for (int i = 0; i < names.size(); i++) {
+            final String name = names.get(i);
+            final int threadId = i % Math.max(1, parameters.threads);
+            executor.submit(() -> provision(threadId, name));
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(24, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        watcher.notifyTimedPhaseEnded();
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+
+        double seconds = Math.max(1, durationMs) / 1000.0;
+        System.out.println("Provisioning Results:");
+        System.out.printf("  Created: %d%n", created.get());
+        System.out.printf("  Skipped (already present): %d%n", skipped.get());
+        System.out.printf("  Failed: %d%n", failed.get());
+        System.out.printf("  Bytes written: %d%n", bytesWritten.get());
+        System.out.printf("  Throughput: %.2f MiB/s, %.1f objects/s%n",
+                bytesWritten.get() / 1024.0 / 1024.0 / seconds, created.get() / seconds);
+    }
+
+    private void provision(int threadId, String name) {
+        long size = sizeOf(name);
+        try {
+            ObjectMetadataCache.ObjectMetadata existing = metadata.load(name);
+            if (existing.exists() && existing.size == size) {
+                skipped.incrementAndGet();
+                return;
+            }
+        } catch (Exception e) {
+            if (parameters.verbose) {
+                System.err.println("Failed to stat " + name + ", writing it: " + e.getMessage());
+            }
+        }
+
+        Operation operation = new Operation("write", size, parameters.chunkSize, -1, -1);
+        long start = System.nanoTime();
+        long bytes = 0;
+        boolean success = false;
+        String errorCode = "";
+        String errorMessage = "";
+        try {
+            bytes = writer.write(name, operation);
+            success = true;
+            created.incrementAndGet();
+            bytesWritten.addAndGet(bytes);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            errorCode = e.getClass().getSimpleName();
+            errorMessage = e.getMessage() != null ? e.getMessage() : "";
+            System.err.println("Failed to provision " + name + ": " + errorMessage);
+        }
+        watcher.notifyCompleted("provision", threadId, 0, "", name,
+                (System.nanoTime() - start) / 1_000_000.0, bytes, success, errorCode, errorMessage,
+                new ArrayList<>());
+    }
+}
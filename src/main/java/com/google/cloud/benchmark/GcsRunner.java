@@ -1,23 +1,42 @@
 package com.google.cloud.benchmark;
 
+import com.google.api.gax.paging.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
 
 public class GcsRunner implements BenchmarkRunner {
     private final BenchmarkParameters parameters;
     private final Storage storage;
+    private final ObjectMetadataCache metadataCache;
 
-    private byte[] sharedRandomData;
+    private final WriteSource writeSource;
+
+    private final ThreadLocal<ByteBuffer> readBuffer;
+    private final ReadSinks readSinks;
+    private final Workload workload;
+    private final Operation defaultOperation;
+    private final ObjectResolver objectResolver;
+    private final AccessTrace trace;
+    private final AccessTrace.Recorder traceRecorder;
 
     private final RunnerWatcher watcher;
+    /** Set while an adaptive warmup runs */
+    private volatile SteadyStateDetector warmupDetector;
 
     public GcsRunner(BenchmarkParameters parameters, RunnerWatcher watcher) {
         this.parameters = parameters;
@@ -36,104 +55,123 @@ public class GcsRunner implements BenchmarkRunner {
         }
 
         this.storage = builder.build().getService();
+        this.metadataCache = ObjectMetadataCache.fromParameters(parameters, this::fetchMetadata);
+        this.readBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(parameters.readBufferSize));
+        this.readSinks = new ReadSinks(parameters);
+
+        this.workload = Workload.fromParameters(parameters);
+        this.defaultOperation = Operation.fromParameters(parameters);
+        this.objectResolver = new ObjectResolver(parameters);
+        this.trace = AccessTrace.fromParameters(parameters);
+        this.traceRecorder = AccessTrace.Recorder.fromParameters(parameters);
 
-        // Pre-generate data for writes if size is reasonable to avoid runtime overhead
-        if ("write".equalsIgnoreCase(parameters.operation) && parameters.writeSize > 0
-                && parameters.writeSize <= 256 * 1024 * 1024) {
-            this.sharedRandomData = RandomData.generate((int) parameters.writeSize);
+        // Prepare write content up front to avoid runtime overhead
+        if (trace != null) {
+            this.writeSource = trace.hasWrites()
+                    ? WriteSources.fromParameters(parameters, trace.maxWriteSize())
+                    : null;
+        } else if (workload != null) {
+            this.writeSource = workload.hasWrites()
+                    ? WriteSources.fromParameters(parameters, workload.maxWriteSize())
+                    : null;
+        } else if (defaultOperation.isProvision()) {
+            this.writeSource = WriteSources.fromParameters(parameters,
+                    DatasetProvisioner.sizeDistribution(parameters).max());
+        } else {
+            this.writeSource = defaultOperation.isWrite()
+                    ? WriteSources.fromParameters(parameters, defaultOperation.writeSize)
+                    : null;
         }
     }
 
     @Override
     public void run() {
         System.out.printf("Running benchmark with %s client, operation: %s...%n", parameters.client,
-                parameters.operation);
+                describeOperation());
+
+        if (defaultOperation.isProvision()) {
+            new DatasetProvisioner(parameters, watcher, this::fetchMetadata, this::performWrite).run();
+            readSinks.close();
+            return;
+        }
+
+        if (metadataCache != null) {
+            metadataCache.prefill(parameters);
+        }
 
         // Warmup
-        if (parameters.warmups > 0) {
+        if (parameters.adaptiveWarmup) {
+            System.out.println("Running warmup until throughput and latency settle...");
+            warmupDetector = new SteadyStateDetector(parameters);
+            watcher.notifyWarmupDone(warmupDetector.run(parameters.threads,
+                    threadId -> executeOperation(threadId, workload != null ? workload.next() : defaultOperation,
+                            objectResolver.next(threadId), null)));
+            warmupDetector = null;
+        } else if (parameters.warmups > 0) {
             System.out.println("Running warmup...");
+            long warmupStart = System.nanoTime();
             // Run warmup iterations (use same thread count as actual run)
             // For warmup, we can pass a dummy watcher or null if we don't want to track
             // stats,
             // or just ignore the result.
             runOperations(parameters.warmups, parameters.threads, null);
+            watcher.notifyWarmupDone(SteadyStateDetector.Summary.fixed(parameters.warmups,
+                    (System.nanoTime() - warmupStart) / 1_000_000));
         }
 
         System.out.println("Running actual benchmark...");
-        runOperations(parameters.runs, parameters.threads, watcher);
-    }
+        Recording recording = BenchmarkEvents.startRecording(parameters);
+        runOperations(trace != null ? trace.size() : parameters.runs, parameters.threads, watcher);
+        BenchmarkEvents.stopRecording(recording, parameters);
 
-    private void runOperations(int runs, int threads, RunnerWatcher currentWatcher) {
-        ExecutorService executor = Executors.newFixedThreadPool(threads);
-
-        for (int i = 0; i < runs; i++) {
-            final int threadId = i % threads;
-            executor.submit(() -> {
-                long start = System.nanoTime();
-                long bytesProcessed = 0;
-                boolean success = false;
-                String objectName = parameters.object;
-                String errorCode = "";
-                String errorMessage = "";
+        if (metadataCache != null) {
+            ResultPrinter.printMetadataStats(metadataCache);
+        }
+        readSinks.close();
+        if (traceRecorder != null) {
+            traceRecorder.close();
+        }
+    }
 
-                try {
-                    // Determine object name
-                    if (parameters.objectFormat != null && !parameters.objectFormat.isEmpty()) {
-                        int objectId = parameters.objectStart;
-                        if (parameters.objectStop > parameters.objectStart) {
-                            objectId = ThreadLocalRandom.current().nextInt(parameters.objectStart,
-                                    parameters.objectStop);
-                        }
-                        objectName = ObjectResolver.resolveName(parameters.objectFormat, parameters.object, threadId,
-                                objectId);
-                    }
+    private String describeOperation() {
+        if (trace != null) {
+            return String.format("trace (%d operations over %d ms, speed %s)", trace.size(), trace.durationMs(),
+                    parameters.traceSpeed > 0 ? parameters.traceSpeed + "x" : "unthrottled");
+        }
+        return workload != null ? "workload (" + workload.describe() + ")" : parameters.operation;
+    }
 
-                    if (parameters.verbose) {
-                        System.out.println("Thread " + threadId + " operating on " + objectName);
-                    }
+    private void runOperations(int runs, int threads, RunnerWatcher currentWatcher) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat(SchedulerStats.WORKER_THREAD_PREFIX + "%d")
+                .build());
+        if (currentWatcher != null) {
+            // Creating the pool is setup, not part of the timed phase
+            currentWatcher.notifyTimedPhaseStarted();
+        }
 
-                    // Retry loop (matches GrpcRunner implementation)
-                    while (true) {
-                        try {
-                            bytesProcessed = performOperation(objectName);
-                            success = true;
-                            break; // Success - exit retry loop
-                        } catch (Exception e) {
-                            if (!parameters.trying) {
-                                // Not retrying - rethrow exception
-                                throw e;
-                            }
-                            // Log and retry
-                            if (parameters.verbose) {
-                                System.err.println("Operation failed, retrying: " + e.getMessage());
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    if (parameters.verbose) {
-                        e.printStackTrace();
-                    }
-                    success = false;
-                    errorCode = e.getClass().getSimpleName();
-                    errorMessage = e.getMessage() != null ? e.getMessage() : "";
-                }
-                long end = System.nanoTime();
-                if (currentWatcher != null) {
-                    // Call with detailed metrics
-                    currentWatcher.notifyCompleted(
-                            threadId,
-                            0, // channelId - not applicable for GCS client library
-                            "", // peer - not available from client library
-                            objectName,
-                            (long) ((end - start) / 1_000_000.0),
-                            bytesProcessed,
-                            success,
-                            errorCode,
-                            errorMessage,
-                            new java.util.ArrayList<>() // chunks - client library doesn't expose chunk info
-                    );
-                }
+        if (trace != null) {
+            // Warmup replays the start of the trace as fast as possible
+            double speed = currentWatcher != null ? parameters.traceSpeed : 0;
+            trace.replay(executor, threads, runs, speed,
+                    (threadId, entry, dueNanos) -> executeOperation(threadId, entry.operation, entry.object,
+                            currentWatcher, dueNanos));
+        } else if (parameters.rate > 0 && currentWatcher != null) {
+            // Only the timed phase is open-loop; warmup runs as fast as it can.
+            // The phase started just above, so it starts with the first due time.
+            OpenLoopSchedule.run(runs, parameters.rate, (i, dueNanos) -> {
+                final int threadId = i % threads;
+                Operation operation = workload != null ? workload.next() : defaultOperation;
+                String objectName = objectResolver.next(threadId);
+                executor.submit(() -> executeOperation(threadId, operation, objectName, currentWatcher, dueNanos));
             });
+        } else {
+            for (int i = 0; i < runs; i++) {
+                final int threadId = i % threads;
+                executor.submit(() -> executeOperation(threadId,
+                        workload != null ? workload.next() : defaultOperation,
+                        objectResolver.next(threadId), currentWatcher));
+            }
         }
 
         executor.shutdown();
@@ -149,89 +187,263 @@ public class GcsRunner implements BenchmarkRunner {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-    }
-
-    private long performOperation(String objectName) {
-        if ("write".equalsIgnoreCase(parameters.operation)) {
-            return performWrite(objectName);
-        } else if ("random-read".equalsIgnoreCase(parameters.operation)) {
-            return performRandomRead(objectName);
-        } else {
-            return performRead(objectName);
+        if (currentWatcher != null) {
+            currentWatcher.notifyTimedPhaseEnded();
         }
     }
 
-    private long performRead(String objectName) {
-        Blob blob = storage.get(BlobId.of(parameters.bucket, objectName));
-        if (blob == null) {
-            if (parameters.verbose)
-                System.err.println("Object not found: " + objectName);
-            return 0;
-        }
+    private void executeOperation(int threadId, Operation operation, String objectName,
+            RunnerWatcher currentWatcher) {
+        executeOperation(threadId, operation, objectName, currentWatcher, System.nanoTime());
+    }
 
-        long offset = parameters.readOffset > 0 ? parameters.readOffset : 0;
+    /**
+     * @param dueNanos When the operation was due; with --rate its latency
+     *                 includes the time it waited for a worker
+     */
+    private void executeOperation(int threadId, Operation operation, String objectName,
+            RunnerWatcher currentWatcher, long dueNanos) {
+        long startWallMs = System.currentTimeMillis();
+        long start = dueNanos;
+        long bytesProcessed = 0;
+        boolean success = false;
+        String errorCode = "";
+        String errorMessage = "";
+        int attempts = 0;
+        long[] randomOffset = {-1};
+        BenchmarkEvents.OperationEvent event = BenchmarkEvents.begin(operation, objectName, threadId,
+                currentWatcher == null);
 
-        if (parameters.readLimit > 0 || offset > 0) {
-            try (var reader = blob.reader()) {
-                if (offset > 0) {
-                    reader.seek(offset);
-                }
+        try {
+            if (parameters.verbose) {
+                System.out.println("Thread " + threadId + " operating on " + objectName);
+            }
 
-                // If readLimit is specified, read that many bytes.
-                // Otherwise read the entire object.
-                if (parameters.readLimit > 0) {
-                    byte[] buffer = new byte[(int) parameters.readLimit];
-                    return reader.read(ByteBuffer.wrap(buffer));
-                } else {
-                    // Read until EOF
-                    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024); // 64KB buffer
-                    long totalRead = 0;
-                    while (reader.read(buffer) != -1) {
-                        totalRead += buffer.position();
-                        buffer.clear();
+            // Retry loop (matches GrpcRunner implementation)
+            while (true) {
+                attempts++;
+                try {
+                    bytesProcessed = performOperation(objectName, operation, randomOffset);
+                    success = true;
+                    break; // Success - exit retry loop
+                } catch (Exception e) {
+                    if (!parameters.trying) {
+                        // Not retrying - rethrow exception
+                        throw e;
+                    }
+                    // Log and retry
+                    BenchmarkEvents.retry(operation, objectName, attempts, e);
+                    if (parameters.verbose) {
+                        System.err.println("Operation failed, retrying: " + e.getMessage());
                     }
-                    return totalRead;
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
             }
-        } else {
-            byte[] content = blob.getContent();
-            return content.length;
+        } catch (Exception e) {
+            if (parameters.verbose) {
+                e.printStackTrace();
+            }
+            success = false;
+            errorCode = e.getClass().getSimpleName();
+            errorMessage = e.getMessage() != null ? e.getMessage() : "";
+        }
+        long end = System.nanoTime();
+        BenchmarkEvents.end(event, bytesProcessed, attempts, success, errorCode);
+        SteadyStateDetector detector = warmupDetector;
+        if (currentWatcher == null && detector != null && success) {
+            detector.record((end - start) / 1_000_000.0, bytesProcessed);
+        }
+        if (currentWatcher != null) {
+            if (traceRecorder != null) {
+                traceRecorder.record(startWallMs, operation, objectName, randomOffset[0], bytesProcessed);
+            }
+            // Call with detailed metrics
+            currentWatcher.notifyCompleted(
+                    operation.type,
+                    threadId,
+                    0, // channelId - not applicable for GCS client library
+                    "", // peer - not available from client library
+                    objectName,
+                    (end - start) / 1_000_000.0,
+                    bytesProcessed,
+                    success,
+                    errorCode,
+                    errorMessage,
+                    new java.util.ArrayList<>() // chunks - client library doesn't expose chunk info
+            );
         }
     }
 
-    private long performWrite(String objectName) {
-        long size = parameters.writeSize > 0 ? parameters.writeSize : 1024 * 1024;
-        byte[] data;
-        if (this.sharedRandomData != null && this.sharedRandomData.length == size) {
-            data = this.sharedRandomData;
+    private long performOperation(String objectName, Operation operation, long[] randomOffset) {
+        if (operation.isMetadata()) {
+            performMetadataOperation(objectName, operation);
+            return 0;
+        } else if (operation.isWrite()) {
+            return performWrite(objectName, operation);
+        } else if (operation.isRandomRead()) {
+            return performRandomRead(objectName, operation, randomOffset);
         } else {
-            data = RandomData.generate((int) size);
+            return performRead(objectName, operation);
+        }
+    }
+
+    /**
+     * Run a stat, list (one page), delete or metadata update.
+     */
+    private void performMetadataOperation(String objectName, Operation operation) {
+        BlobId blobId = BlobId.of(parameters.bucket, objectName);
+        switch (operation.type) {
+            case "stat":
+                if (storage.get(blobId) == null) {
+                    throw new StorageException(404, "Object not found: " + objectName);
+                }
+                break;
+            case "list":
+                Page<Blob> page = storage.list(parameters.bucket,
+                        Storage.BlobListOption.pageSize(parameters.listPageSize),
+                        Storage.BlobListOption.prefix(ObjectResolver.listPrefix(objectName,
+                                parameters.listPrefixDepth)));
+                int count = 0;
+                for (Blob ignored : page.getValues()) {
+                    count++;
+                }
+                if (parameters.verbose) {
+                    System.out.println("Listed " + count + " objects");
+                }
+                break;
+            case "delete":
+                if (!storage.delete(blobId)) {
+                    throw new StorageException(404, "Object not found: " + objectName);
+                }
+                break;
+            case "update":
+                storage.update(BlobInfo.newBuilder(blobId)
+                        .setMetadata(Collections.singletonMap(GrpcRunner.UPDATE_METADATA_KEY,
+                                String.valueOf(System.currentTimeMillis())))
+                        .build());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown metadata operation: " + operation.type);
+        }
+    }
+
+    private long performRead(String objectName, Operation operation) {
+        // Open the reader directly so the read is a single RPC without a metadata lookup
+        long offset = operation.readOffset > 0 ? operation.readOffset : 0;
+
+        try (ReadChannel reader = openReader(BlobId.of(parameters.bucket, objectName))) {
+            if (offset > 0) {
+                reader.seek(offset);
+            }
+            if (operation.readLimit > 0) {
+                reader.limit(offset + operation.readLimit);
+            }
+
+            return drain(reader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
+    }
+
+    private long performWrite(String objectName, Operation operation) {
+        long size = operation.writeSize > 0 ? operation.writeSize : 1024 * 1024;
         BlobId blobId = BlobId.of(parameters.bucket, objectName);
         BlobInfo blobInfo = BlobInfo.newBuilder(blobId).build();
-        storage.create(blobInfo, data);
+
+        byte[] data = writeSource.asArray(size);
+        if (data != null) {
+            storage.create(blobInfo, data, 0, (int) size);
+            return size;
+        }
+
+        // Stream sources that do not fit in one array through a WriteChannel
+        int chunkSize = operation.chunkSize > 0 ? (int) operation.chunkSize : 2 * 1024 * 1024;
+        WriteSource.Cursor cursor = writeSource.open(size);
+        try (WriteChannel writer = storage.writer(blobInfo)) {
+            while (cursor.hasRemaining()) {
+                // A chunk can be several slices; writing them one by one avoids flattening it
+                for (ByteBuffer buffer : cursor.next(chunkSize).asReadOnlyByteBufferList()) {
+                    while (buffer.hasRemaining()) {
+                        writer.write(buffer);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         return size;
     }
 
-    private long performRandomRead(String objectName) {
-        Blob blob = storage.get(BlobId.of(parameters.bucket, objectName));
-        if (blob == null)
-            return 0;
-        long objectSize = blob.getSize();
-        long chunkSize = parameters.chunkSize > 0 ? parameters.chunkSize : 1024 * 1024;
+    /**
+     * @param offsetOut Receives the offset read at, for the trace recorder
+     */
+    private long performRandomRead(String objectName, Operation operation, long[] offsetOut) {
+        BlobId blobId = BlobId.of(parameters.bucket, objectName);
+        long objectSize;
+        if (metadataCache != null) {
+            ObjectMetadataCache.ObjectMetadata metadata = metadataCache.get(objectName);
+            if (!metadata.exists())
+                return 0;
+            objectSize = metadata.size;
+        } else {
+            Blob blob = storage.get(blobId);
+            if (blob == null)
+                return 0;
+            objectSize = blob.getSize();
+        }
+        long chunkSize = operation.chunkSize > 0 ? operation.chunkSize : 1024 * 1024;
 
-        long offset = ThreadLocalRandom.current().nextLong(0, Math.max(1, objectSize - chunkSize));
-        if (offset < 0)
-            offset = 0;
+        // A replayed trace fixes the offset; otherwise pick one at random
+        long offset = operation.replayOffset >= 0
+                ? operation.replayOffset
+                : ThreadLocalRandom.current().nextLong(0, Math.max(1, objectSize - chunkSize));
+        offsetOut[0] = offset;
 
-        try (var reader = blob.reader()) {
+        try (ReadChannel reader = openReader(blobId)) {
             reader.seek(offset);
-            byte[] buffer = new byte[(int) chunkSize];
-            return reader.read(ByteBuffer.wrap(buffer));
-        } catch (Exception e) {
+            reader.limit(offset + chunkSize);
+            return drain(reader);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Read until EOF through the reusable per-thread direct buffer, handing
+     * every filled buffer to a pooled sink.
+     */
+    private long drain(ReadChannel reader) throws IOException {
+        ByteBuffer buffer = readBuffer.get();
+        ReadSink sink = readSinks.acquire();
+        try {
+            long totalRead = 0;
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                BenchmarkEvents.chunk(totalRead, n);
+                totalRead += n;
+                buffer.flip();
+                sink.write(buffer);
+                buffer.clear();
+            }
+            return totalRead;
+        } finally {
+            readSinks.release(sink);
+        }
+    }
+
+    private ReadChannel openReader(BlobId blobId) {
+        ReadChannel reader = storage.reader(blobId);
+        if (parameters.readerChunkSize > 0) {
+            reader.setChunkSize(parameters.readerChunkSize);
+        }
+        return reader;
+    }
+
+    private ObjectMetadataCache.ObjectMetadata fetchMetadata(String objectName) {
+        Blob blob = storage.get(BlobId.of(parameters.bucket, objectName));
+        if (blob == null) {
+            return ObjectMetadataCache.ObjectMetadata.MISSING;
+        }
+        Long generation = blob.getGeneration();
+        return new ObjectMetadataCache.ObjectMetadata(blob.getSize(), generation != null ? generation : 0);
+    }
 }
@@ -1,139 +1,178 @@
 package com.google.cloud.benchmark;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.FieldMask;
 import com.google.storage.v2.ChecksummedData;
+import com.google.storage.v2.DeleteObjectRequest;
+import com.google.storage.v2.ListObjectsRequest;
+import com.google.storage.v2.ListObjectsResponse;
 import com.google.storage.v2.Object;
 import com.google.storage.v2.ReadObjectRequest;
 import com.google.storage.v2.ReadObjectResponse;
+import com.google.storage.v2.UpdateObjectRequest;
 import com.google.storage.v2.WriteObjectRequest;
 import com.google.storage.v2.WriteObjectResponse;
 import com.google.storage.v2.WriteObjectSpec;
 import io.grpc.Status;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
 
 /**
  * gRPC-based benchmark runner using StorageStubProvider for channel management.
  * Supports multiple channel pooling policies.
  */
 public class GrpcRunner implements BenchmarkRunner {
+    static final String UPDATE_METADATA_KEY = "gcs-bench-updated";
+    private static final long PRECONNECT_TIMEOUT_MS = 30_000;
+
     private final BenchmarkParameters parameters;
     private final RunnerWatcher watcher;
+    /** Set while an adaptive warmup runs */
+    private volatile SteadyStateDetector warmupDetector;
     private final StorageStubProvider stubProvider;
-    private byte[] sharedRandomData;
+    private final HedgingPolicy hedgingPolicy;
+    private final HedgedReader hedgedReader;
+    private final ObjectMetadataCache metadataCache;
+    private final ReadSinks readSinks;
+    private final WriteSource writeSource;
+    private final Workload workload;
+    private final Operation defaultOperation;
+    private final ObjectResolver objectResolver;
+    private final AccessTrace trace;
+    private final AccessTrace.Recorder traceRecorder;
 
     public GrpcRunner(BenchmarkParameters parameters, RunnerWatcher watcher, StorageStubProvider stubProvider) {
         this.parameters = parameters;
         this.watcher = watcher;
         this.stubProvider = stubProvider;
-
-        if ("write".equalsIgnoreCase(parameters.operation) && parameters.writeSize > 0
-                && parameters.writeSize <= 256 * 1024 * 1024) {
-            this.sharedRandomData = RandomData.generate((int) parameters.writeSize);
+        this.hedgingPolicy = HedgingPolicy.fromParameters(parameters);
+        this.hedgedReader = hedgingPolicy != null ? new HedgedReader(stubProvider, hedgingPolicy) : null;
+        this.metadataCache = ObjectMetadataCache.fromParameters(parameters, this::fetchMetadata);
+        this.readSinks = new ReadSinks(parameters);
+
+        this.workload = Workload.fromParameters(parameters);
+        this.defaultOperation = Operation.fromParameters(parameters);
+        this.objectResolver = new ObjectResolver(parameters);
+        this.trace = AccessTrace.fromParameters(parameters);
+        this.traceRecorder = AccessTrace.Recorder.fromParameters(parameters);
+
+        if (trace != null) {
+            this.writeSource = trace.hasWrites()
+                    ? WriteSources.fromParameters(parameters, trace.maxWriteSize())
+                    : null;
+        } else if (workload != null) {
+            this.writeSource = workload.hasWrites()
+                    ? WriteSources.fromParameters(parameters, workload.maxWriteSize())
+                    : null;
+        } else if (defaultOperation.isProvision()) {
+            this.writeSource = WriteSources.fromParameters(parameters,
+                    DatasetProvisioner.sizeDistribution(parameters).max());
+        } else {
+            this.writeSource = defaultOperation.isWrite()
+                    ? WriteSources.fromParameters(parameters, defaultOperation.writeSize)
+                    : null;
         }
     }
 
     @Override
     public void run() {
-        System.out.printf("Running benchmark with direct gRPC client, operation: %s...%n", parameters.operation);
+        System.out.printf("Running benchmark with direct gRPC client, operation: %s...%n",
+                describeOperation());
+        if (hedgingPolicy != null) {
+            System.out.println("Hedging reads after " + hedgingPolicy.describe());
+        }
+
+        if (defaultOperation.isProvision()) {
+            new DatasetProvisioner(parameters, watcher, this::fetchMetadata, this::performWrite).run();
+            stubProvider.shutdown();
+            readSinks.close();
+            return;
+        }
+
+        if (metadataCache != null) {
+            metadataCache.prefill(parameters);
+        }
 
-        if (parameters.warmups > 0) {
+        if (parameters.adaptiveWarmup) {
+            System.out.println("Running warmup until throughput and latency settle...");
+            warmupDetector = new SteadyStateDetector(parameters);
+            watcher.notifyWarmupDone(warmupDetector.run(parameters.threads,
+                    threadId -> executeOperation(threadId, workload != null ? workload.next() : defaultOperation,
+                            objectResolver.next(threadId), null)));
+            warmupDetector = null;
+        } else if (parameters.warmups > 0) {
             System.out.println("Running warmup...");
+            long warmupStart = System.nanoTime();
             runOperations(parameters.warmups, parameters.threads, null);
+            watcher.notifyWarmupDone(SteadyStateDetector.Summary.fixed(parameters.warmups,
+                    (System.nanoTime() - warmupStart) / 1_000_000));
         }
 
         System.out.println("Running actual benchmark...");
-        runOperations(parameters.runs, parameters.threads, watcher);
+        Recording recording = BenchmarkEvents.startRecording(parameters);
+        runOperations(trace != null ? trace.size() : parameters.runs, parameters.threads, watcher);
+        BenchmarkEvents.stopRecording(recording, parameters);
+
+        if (metadataCache != null) {
+            ResultPrinter.printMetadataStats(metadataCache);
+        }
 
         stubProvider.shutdown();
+        readSinks.close();
+        if (traceRecorder != null) {
+            traceRecorder.close();
+        }
     }
 
-    private void runOperations(int runs, int threads, RunnerWatcher currentWatcher) {
-        ExecutorService executor = Executors.newFixedThreadPool(threads);
-
-        for (int i = 0; i < runs; i++) {
-            final int threadId = i % threads;
-
-            executor.submit(() -> {
-                long start = System.nanoTime();
-                long bytesProcessed = 0;
-                boolean success = false;
-                String objectName = parameters.object;
-                String errorCode = "";
-                String errorMessage = "";
-
-                try {
-                    if (parameters.objectFormat != null && !parameters.objectFormat.isEmpty()) {
-                        int objectId = parameters.objectStart;
-                        if (parameters.objectStop > parameters.objectStart) {
-                            objectId = ThreadLocalRandom.current().nextInt(parameters.objectStart,
-                                    parameters.objectStop);
-                        }
-                        objectName = ObjectResolver.resolveName(parameters.objectFormat, parameters.object, threadId,
-                                objectId);
-                    }
-
-                    if (parameters.verbose) {
-                        System.out.println("Thread " + threadId + " operating on " + objectName);
-                    }
+    private String describeOperation() {
+        if (trace != null) {
+            return String.format("trace (%d operations over %d ms, speed %s)", trace.size(), trace.durationMs(),
+                    parameters.traceSpeed > 0 ? parameters.traceSpeed + "x" : "unthrottled");
+        }
+        return workload != null ? "workload (" + workload.describe() + ")" : parameters.operation;
+    }
 
-                    // Retry loop (matches C++ implementation)
-                    while (true) {
-                        try {
-                            if ("write".equalsIgnoreCase(parameters.operation)) {
-                                bytesProcessed = performWrite(objectName);
-                            } else if ("random-read".equalsIgnoreCase(parameters.operation)) {
-                                bytesProcessed = performRandomRead(objectName);
-                            } else {
-                                bytesProcessed = performRead(objectName);
-                            }
-                            success = true;
-                            break; // Success - exit retry loop
-                        } catch (Exception e) {
-                            if (!parameters.trying) {
-                                // Not retrying - rethrow exception
-                                throw e;
-                            }
-                            // Log and retry
-                            if (parameters.verbose) {
-                                System.err.println("Operation failed, retrying: " + e.getMessage());
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    if (parameters.verbose) {
-                        e.printStackTrace();
-                    }
-                    success = false;
-                    errorCode = e.getClass().getSimpleName();
-                    errorMessage = e.getMessage() != null ? e.getMessage() : "";
-                }
+    private void runOperations(int runs, int threads, RunnerWatcher currentWatcher) {
+        if (parameters.preconnect) {
+            stubProvider.preconnect(threads, PRECONNECT_TIMEOUT_MS);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat(SchedulerStats.WORKER_THREAD_PREFIX + "%d")
+                .build());
+        if (currentWatcher != null) {
+            // Preconnect and pool creation are setup, not part of the timed phase
+            currentWatcher.notifyTimedPhaseStarted();
+        }
 
-                long end = System.nanoTime();
-                if (currentWatcher != null) {
-                    // Call with detailed metrics
-                    // Note: channelId and peer extraction from gRPC context requires additional
-                    // infrastructure
-                    // Note: chunk-level timing requires instrumenting the streaming response
-                    // iterator
-                    currentWatcher.notifyCompleted(
-                            threadId,
-                            0, // channelId - requires tracking in StorageStubProvider
-                            "", // peer - requires gRPC ClientInterceptor to extract
-                            objectName,
-                            (long) ((end - start) / 1_000_000.0),
-                            bytesProcessed,
-                            success,
-                            errorCode,
-                            errorMessage,
-                            new ArrayList<>() // chunks - requires wrapping response iterator
-                    );
-                }
+        if (trace != null) {
+            // Warmup replays the start of the trace as fast as possible
+            double speed = currentWatcher != null ? parameters.traceSpeed : 0;
+            trace.replay(executor, threads, runs, speed,
+                    (threadId, entry, dueNanos) -> executeOperation(threadId, entry.operation, entry.object,
+                            currentWatcher, dueNanos));
+        } else if (parameters.rate > 0 && currentWatcher != null) {
+            // Only the timed phase is open-loop; warmup runs as fast as it can.
+            // The phase started just above, so it starts with the first due time.
+            OpenLoopSchedule.run(runs, parameters.rate, (i, dueNanos) -> {
+                final int threadId = i % threads;
+                Operation operation = workload != null ? workload.next() : defaultOperation;
+                String objectName = objectResolver.next(threadId);
+                executor.submit(() -> executeOperation(threadId, operation, objectName, currentWatcher, dueNanos));
             });
+        } else {
+            for (int i = 0; i < runs; i++) {
+                final int threadId = i % threads;
+                executor.submit(() -> executeOperation(threadId,
+                        workload != null ? workload.next() : defaultOperation,
+                        objectResolver.next(threadId), currentWatcher));
+            }
         }
 
         executor.shutdown();
@@ -148,33 +187,130 @@ public class GrpcRunner implements BenchmarkRunner {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if (currentWatcher != null) {
+            currentWatcher.notifyTimedPhaseEnded();
+        }
     }
 
-    private long performRead(String objectName) {
-        StorageStubProvider.StubHolder holder = stubProvider.getStub();
+    private void executeOperation(int threadId, Operation operation, String objectName,
+            RunnerWatcher currentWatcher) {
+        executeOperation(threadId, operation, objectName, currentWatcher, System.nanoTime());
+    }
+
+    /**
+     * @param dueNanos When the operation was due; with --rate its latency
+     *                 includes the time it waited for a worker
+     */
+    private void executeOperation(int threadId, Operation operation, String objectName,
+            RunnerWatcher currentWatcher, long dueNanos) {
+        long startWallMs = System.currentTimeMillis();
+        long start = dueNanos;
+        long bytesProcessed = 0;
+        boolean success = false;
+        String errorCode = "";
+        String errorMessage = "";
+        int attempts = 0;
+        long[] randomOffset = {-1};
+        BenchmarkEvents.OperationEvent event = BenchmarkEvents.begin(operation, objectName, threadId,
+                currentWatcher == null);
+
+        try {
+            if (parameters.verbose) {
+                System.out.println("Thread " + threadId + " operating on " + objectName);
+            }
+
+            // Retry loop (matches C++ implementation)
+            while (true) {
+                attempts++;
+                try {
+                    if (operation.isMetadata()) {
+                        performMetadataOperation(objectName, operation);
+                    } else if (operation.isWrite()) {
+                        bytesProcessed = performWrite(objectName, operation);
+                    } else if (operation.isRandomRead()) {
+                        bytesProcessed = performRandomRead(objectName, operation, currentWatcher, randomOffset);
+                    } else {
+                        bytesProcessed = performRead(objectName, operation, currentWatcher);
+                    }
+                    success = true;
+                    break; // Success - exit retry loop
+                } catch (Exception e) {
+                    if (!parameters.trying) {
+                        // Not retrying - rethrow exception
+                        throw e;
+                    }
+                    // Log and retry
+                    BenchmarkEvents.retry(operation, objectName, attempts, e);
+                    if (parameters.verbose) {
+                        System.err.println("Operation failed, retrying: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            if (parameters.verbose) {
+                e.printStackTrace();
+            }
+            success = false;
+            errorCode = e.getClass().getSimpleName();
+            errorMessage = e.getMessage() != null ? e.getMessage() : "";
+        }
+
+        long end = System.nanoTime();
+        BenchmarkEvents.end(event, bytesProcessed, attempts, success, errorCode);
+        SteadyStateDetector detector = warmupDetector;
+        if (currentWatcher == null && detector != null && success) {
+            detector.record((end - start) / 1_000_000.0, bytesProcessed);
+        }
+        if (currentWatcher != null) {
+            if (traceRecorder != null) {
+                traceRecorder.record(startWallMs, operation, objectName, randomOffset[0], bytesProcessed);
+            }
+            // Call with detailed metrics
+            // Note: channelId and peer extraction from gRPC context requires additional
+            // infrastructure
+            // Note: chunk-level timing requires instrumenting the streaming response
+            // iterator
+            currentWatcher.notifyCompleted(
+                    operation.type,
+                    threadId,
+                    0, // channelId - requires tracking in StorageStubProvider
+                    "", // peer - requires gRPC ClientInterceptor to extract
+                    objectName,
+                    (end - start) / 1_000_000.0,
+                    bytesProcessed,
+                    success,
+                    errorCode,
+                    errorMessage,
+                    new ArrayList<>() // chunks - requires wrapping response iterator
+            );
+        }
+    }
+
+    private long performRead(String objectName, Operation operation, RunnerWatcher currentWatcher)
+            throws InterruptedException, IOException {
         String bucketName = "projects/_/buckets/" + parameters.bucket;
 
         ReadObjectRequest.Builder reqBuilder = ReadObjectRequest.newBuilder()
                 .setBucket(bucketName)
                 .setObject(objectName);
 
-        long offset = parameters.readOffset > 0 ? parameters.readOffset : 0;
+        long offset = operation.readOffset > 0 ? operation.readOffset : 0;
         if (offset > 0) {
             reqBuilder.setReadOffset(offset);
         }
-        if (parameters.readLimit > 0) {
-            reqBuilder.setReadLimit(parameters.readLimit);
+        if (operation.readLimit > 0) {
+            reqBuilder.setReadLimit(operation.readLimit);
         }
 
+        if (hedgedReader != null) {
+            return hedgedReader.read(reqBuilder.build(), currentWatcher);
+        }
+
+        StorageStubProvider.StubHolder holder = stubProvider.getStub();
+        BenchmarkEvents.channel(holder.channel);
         try {
             Iterator<ReadObjectResponse> iterator = holder.blockingStub.readObject(reqBuilder.build());
-            long totalBytes = 0;
-            while (iterator.hasNext()) {
-                ReadObjectResponse response = iterator.next();
-                if (response.hasChecksummedData()) {
-                    totalBytes += response.getChecksummedData().getContent().size();
-                }
-            }
+            long totalBytes = drain(iterator);
             stubProvider.reportResult(holder.channel, Status.OK, totalBytes);
             return totalBytes;
         } catch (io.grpc.StatusRuntimeException e) {
@@ -183,24 +319,31 @@ public class GrpcRunner implements BenchmarkRunner {
         }
     }
 
-    private long performWrite(String objectName) throws InterruptedException {
+    private long performWrite(String objectName, Operation operation) throws InterruptedException {
         StorageStubProvider.StubHolder holder = stubProvider.getStub();
+        BenchmarkEvents.channel(holder.channel);
         String bucketName = "projects/_/buckets/" + parameters.bucket;
 
-        long size = parameters.writeSize > 0 ? parameters.writeSize : 1024 * 1024;
-        byte[] data;
-        if (this.sharedRandomData != null && this.sharedRandomData.length == size) {
-            data = this.sharedRandomData;
-        } else {
-            data = RandomData.generate((int) size);
-        }
+        long size = operation.writeSize > 0 ? operation.writeSize : 1024 * 1024;
+        WriteSource.Cursor cursor = writeSource.open(size);
 
         java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
         final long[] resultSize = { 0 };
         final Throwable[] error = { null };
+        final java.lang.Object readyLock = new java.lang.Object();
+
+        io.grpc.stub.ClientCallStreamObserver<WriteObjectRequest> requestObserver =
+                (io.grpc.stub.ClientCallStreamObserver<WriteObjectRequest>) holder.asyncStub
+                .writeObject(new io.grpc.stub.ClientResponseObserver<WriteObjectRequest, WriteObjectResponse>() {
+                    @Override
+                    public void beforeStart(io.grpc.stub.ClientCallStreamObserver<WriteObjectRequest> requestStream) {
+                        requestStream.setOnReadyHandler(() -> {
+                            synchronized (readyLock) {
+                                readyLock.notifyAll();
+                            }
+                        });
+                    }
 
-        io.grpc.stub.StreamObserver<WriteObjectRequest> requestObserver = holder.asyncStub
-                .writeObject(new io.grpc.stub.StreamObserver<WriteObjectResponse>() {
                     @Override
                     public void onNext(WriteObjectResponse value) {
                         if (value.hasResource()) {
@@ -212,11 +355,17 @@ public class GrpcRunner implements BenchmarkRunner {
                     public void onError(Throwable t) {
                         error[0] = t;
                         latch.countDown();
+                        synchronized (readyLock) {
+                            readyLock.notifyAll();
+                        }
                     }
 
                     @Override
                     public void onCompleted() {
                         latch.countDown();
+                        synchronized (readyLock) {
+                            readyLock.notifyAll();
+                        }
                     }
                 });
 
@@ -226,20 +375,26 @@ public class GrpcRunner implements BenchmarkRunner {
                 .build();
         requestObserver.onNext(WriteObjectRequest.newBuilder().setWriteObjectSpec(spec).build());
 
-        // Send data in chunks
-        int offset = 0;
-        int chunkSize = parameters.chunkSize > 0 ? (int) parameters.chunkSize : 2 * 1024 * 1024; // Default 2MB
-        while (offset < data.length) {
-            int length = Math.min(chunkSize, data.length - offset);
-            ByteString content = ByteString.copyFrom(data, offset, length);
+        // Send data in chunks, respecting flow control so large objects are not
+        // buffered in memory
+        long offset = 0;
+        int chunkSize = operation.chunkSize > 0 ? (int) operation.chunkSize : 2 * 1024 * 1024; // Default 2MB
+        while (cursor.hasRemaining() && latch.getCount() > 0) {
+            synchronized (readyLock) {
+                while (!requestObserver.isReady() && latch.getCount() > 0) {
+                    readyLock.wait();
+                }
+            }
+            ByteString content = cursor.next(chunkSize);
             requestObserver.onNext(WriteObjectRequest.newBuilder()
+                    .setWriteOffset(offset)
                     .setChecksummedData(ChecksummedData.newBuilder().setContent(content).build())
                     .build());
-            offset += length;
+            offset += content.size();
         }
 
         // Finish
-        requestObserver.onNext(WriteObjectRequest.newBuilder().setFinishWrite(true).build());
+        requestObserver.onNext(WriteObjectRequest.newBuilder().setWriteOffset(offset).setFinishWrite(true).build());
         requestObserver.onCompleted();
 
         latch.await();
@@ -256,21 +411,28 @@ public class GrpcRunner implements BenchmarkRunner {
         return size;
     }
 
-    private long performRandomRead(String objectName) {
+    /**
+     * @param offsetOut Receives the offset read at, for the trace recorder
+     */
+    private long performRandomRead(String objectName, Operation operation, RunnerWatcher currentWatcher,
+            long[] offsetOut) throws InterruptedException, IOException {
         StorageStubProvider.StubHolder holder = stubProvider.getStub();
+        BenchmarkEvents.channel(holder.channel);
         String bucketName = "projects/_/buckets/" + parameters.bucket;
+        boolean hedged = false;
 
         try {
             // Get object metadata to find size
-            com.google.storage.v2.GetObjectRequest getReq = com.google.storage.v2.GetObjectRequest.newBuilder()
-                    .setBucket(bucketName)
-                    .setObject(objectName)
-                    .build();
-            Object obj = holder.blockingStub.getObject(getReq);
-            long objectSize = obj.getSize();
+            long objectSize = metadataCache != null
+                    ? metadataCache.get(objectName).size
+                    : getObject(holder, objectName).getSize();
 
-            long chunkSize = parameters.chunkSize > 0 ? parameters.chunkSize : 1024 * 1024;
-            long offset = ThreadLocalRandom.current().nextLong(0, Math.max(1, objectSize - chunkSize));
+            long chunkSize = operation.chunkSize > 0 ? operation.chunkSize : 1024 * 1024;
+            // A replayed trace fixes the offset; otherwise pick one at random
+            long offset = operation.replayOffset >= 0
+                    ? operation.replayOffset
+                    : ThreadLocalRandom.current().nextLong(0, Math.max(1, objectSize - chunkSize));
+            offsetOut[0] = offset;
 
             ReadObjectRequest req = ReadObjectRequest.newBuilder()
                     .setBucket(bucketName)
@@ -279,16 +441,105 @@ public class GrpcRunner implements BenchmarkRunner {
                     .setReadLimit(chunkSize)
                     .build();
 
+            if (hedgedReader != null) {
+                // The hedged reader reports the result of the primary call on this stub
+                hedged = true;
+                return hedgedReader.read(holder, req, currentWatcher);
+            }
+
             Iterator<ReadObjectResponse> iterator = holder.blockingStub.readObject(req);
+            long totalBytes = drain(iterator);
+            stubProvider.reportResult(holder.channel, Status.OK, totalBytes);
+            return totalBytes;
+        } catch (io.grpc.StatusRuntimeException e) {
+            if (!hedged) {
+                stubProvider.reportResult(holder.channel, e.getStatus(), 0);
+            }
+            throw e;
+        }
+    }
+
+    private long drain(Iterator<ReadObjectResponse> iterator) throws IOException {
+        ReadSink sink = readSinks.acquire();
+        try {
             long totalBytes = 0;
             while (iterator.hasNext()) {
                 ReadObjectResponse response = iterator.next();
                 if (response.hasChecksummedData()) {
-                    totalBytes += response.getChecksummedData().getContent().size();
+                    ByteString content = response.getChecksummedData().getContent();
+                    BenchmarkEvents.chunk(totalBytes, content.size());
+                    sink.write(content.asReadOnlyByteBuffer());
+                    totalBytes += content.size();
                 }
             }
-            stubProvider.reportResult(holder.channel, Status.OK, totalBytes);
             return totalBytes;
+        } finally {
+            readSinks.release(sink);
+        }
+    }
+
+    /**
+     * Run a stat, list, delete or metadata update as a single unary RPC.
+     */
+    private void performMetadataOperation(String objectName, Operation operation) {
+        String bucketName = "projects/_/buckets/" + parameters.bucket;
+        StorageStubProvider.StubHolder holder = stubProvider.getStub();
+        BenchmarkEvents.channel(holder.channel);
+        try {
+            switch (operation.type) {
+                case "stat":
+                    getObject(holder, objectName);
+                    break;
+                case "list":
+                    ListObjectsResponse page = holder.blockingStub.listObjects(ListObjectsRequest.newBuilder()
+                            .setParent(bucketName)
+                            .setPageSize(parameters.listPageSize)
+                            .setPrefix(ObjectResolver.listPrefix(objectName, parameters.listPrefixDepth))
+                            .build());
+                    if (parameters.verbose) {
+                        System.out.println("Listed " + page.getObjectsCount() + " objects");
+                    }
+                    break;
+                case "delete":
+                    holder.blockingStub.deleteObject(DeleteObjectRequest.newBuilder()
+                            .setBucket(bucketName)
+                            .setObject(objectName)
+                            .build());
+                    break;
+                case "update":
+                    holder.blockingStub.updateObject(UpdateObjectRequest.newBuilder()
+                            .setObject(Object.newBuilder()
+                                    .setBucket(bucketName)
+                                    .setName(objectName)
+                                    .putMetadata(UPDATE_METADATA_KEY, String.valueOf(System.currentTimeMillis())))
+                            .setUpdateMask(FieldMask.newBuilder().addPaths("metadata"))
+                            .build());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown metadata operation: " + operation.type);
+            }
+            stubProvider.reportResult(holder.channel, Status.OK, 0);
+        } catch (io.grpc.StatusRuntimeException e) {
+            stubProvider.reportResult(holder.channel, e.getStatus(), 0);
+            throw e;
+        }
+    }
+
+    private Object getObject(StorageStubProvider.StubHolder holder, String objectName) {
+        com.google.storage.v2.GetObjectRequest getReq = com.google.storage.v2.GetObjectRequest.newBuilder()
+                .setBucket("projects/_/buckets/" + parameters.bucket)
+                .setObject(objectName)
+                .build();
+        return holder.blockingStub.getObject(getReq);
+    }
+
+    private ObjectMetadataCache.ObjectMetadata fetchMetadata(String objectName) {
+        StorageStubProvider.StubHolder holder = stubProvider.getStub();
+        BenchmarkEvents.channel(holder.channel);
+        try {
+            Object obj = getObject(holder, objectName);
+            stubProvider.reportResult(holder.channel, Status.OK, 0);
+            return new ObjectMetadataCache.ObjectMetadata(obj.getSize(), obj.getGeneration());
         } catch (io.grpc.StatusRuntimeException e) {
             stubProvider.reportResult(holder.channel, e.getStatus(), 0);
             throw e;
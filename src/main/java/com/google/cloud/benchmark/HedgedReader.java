@@ -0,0 +1,201 @@
+package com.google.cloud.benchmark;
+
+import com.google.storage.v2.ReadObjectRequest;
+import com.google.storage.v2.ReadObjectResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs ReadObject calls with hedging. If the primary call has not produced
+ * its first byte within the policy delay, a duplicate call is sent on a
+ * different channel. Whichever call completes first wins and the other one is
+ * cancelled.
+ */
+public class HedgedReader {
+    private final StorageStubProvider stubProvider;
+    private final HedgingPolicy policy;
+
+    public HedgedReader(StorageStubProvider stubProvider, HedgingPolicy policy) {
+        this.stubProvider = stubProvider;
+        this.policy = policy;
+    }
+
+    /**
+     * Read an object, hedging if the first byte is slow to arrive.
+     *
+     * @param request The read request to send
+     * @param watcher Watcher to notify about hedges (may be null)
+     * @return Number of bytes read by the winning call
+     */
+    public long read(ReadObjectRequest request, RunnerWatcher watcher) throws InterruptedException {
+        StorageStubProvider.StubHolder primaryHolder = stubProvider.getStub();
+        BenchmarkEvents.channel(primaryHolder.channel);
+        return read(primaryHolder, request, watcher);
+    }
+
+    /**
+     * Read an object on a stub the caller already took from the provider,
+     * hedging if the first byte is slow to arrive. The result of every
+     * attempt, including the primary one, is reported to the provider.
+     *
+     * @param primaryHolder Stub for the primary call
+     * @param request       The read request to send
+     * @param watcher       Watcher to notify about hedges (may be null)
+     * @return Number of bytes read by the winning call
+     */
+    public long read(StorageStubProvider.StubHolder primaryHolder, ReadObjectRequest request,
+            RunnerWatcher watcher) throws InterruptedException {
+        Race race = new Race();
+        race.start(primaryHolder, request);
+
+        Attempt hedge = null;
+        if (!race.firstByteOrDone.await(policy.getDelayNanos(), TimeUnit.NANOSECONDS)) {
+            hedge = race.start(stubProvider.getStub(primaryHolder.channel), request);
+        }
+
+        Attempt winner;
+        try {
+            winner = race.awaitWinner();
+        } catch (InterruptedException e) {
+            race.cancelAll();
+            throw e;
+        }
+
+        // Without a winner the primary's error is the result of the read
+        Attempt result = winner != null ? winner : race.attempts.get(0);
+        long extraBytes = 0;
+        for (Attempt attempt : race.attempts) {
+            // Read before cancelling, which fails the attempt with CANCELLED
+            Throwable error = attempt.error;
+            if (attempt != result) {
+                extraBytes += attempt.bytes.get();
+            }
+            if (error != null) {
+                // Failed on its own, e.g. DEADLINE_EXCEEDED, so the pool can evict the channel
+                stubProvider.reportResult(attempt.holder.channel, Status.fromThrowable(error), attempt.bytes.get());
+            } else {
+                if (attempt != winner) {
+                    // Still running and cancelled by us; not a channel failure
+                    attempt.cancel();
+                }
+                stubProvider.reportResult(attempt.holder.channel, Status.OK, attempt.bytes.get());
+            }
+        }
+
+        if (hedge != null && watcher != null) {
+            watcher.notifyHedge(winner == hedge, extraBytes);
+        }
+
+        if (winner == null) {
+            Throwable error = result.error;
+            if (error instanceof StatusRuntimeException) {
+                throw (StatusRuntimeException) error;
+            }
+            throw Status.fromThrowable(error).asRuntimeException();
+        }
+        return winner.bytes.get();
+    }
+
+    /**
+     * Tracks the attempts of one logical read and picks the first successful one.
+     */
+    private class Race {
+        final CountDownLatch firstByteOrDone = new CountDownLatch(1);
+        final List<Attempt> attempts = new ArrayList<>(2);
+        private int pending = 0;
+        private Attempt winner;
+
+        Attempt start(StorageStubProvider.StubHolder holder, ReadObjectRequest request) {
+            Attempt attempt = new Attempt(this, holder);
+            synchronized (this) {
+                attempts.add(attempt);
+                pending++;
+            }
+            holder.asyncStub.readObject(request, attempt);
+            return attempt;
+        }
+
+        synchronized void onDone(Attempt attempt) {
+            pending--;
+            if (attempt.error == null && winner == null) {
+                winner = attempt;
+            }
+            notifyAll();
+        }
+
+        synchronized Attempt awaitWinner() throws InterruptedException {
+            while (winner == null && pending > 0) {
+                wait();
+            }
+            return winner;
+        }
+
+        synchronized void cancelAll() {
+            for (Attempt attempt : attempts) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    /**
+     * A single ReadObject call within a race.
+     */
+    private class Attempt implements ClientResponseObserver<ReadObjectRequest, ReadObjectResponse> {
+        final Race race;
+        final StorageStubProvider.StubHolder holder;
+        final AtomicLong bytes = new AtomicLong(0);
+        final long startNanos = System.nanoTime();
+        volatile ClientCallStreamObserver<ReadObjectRequest> call;
+        volatile Throwable error;
+        private boolean receivedFirst = false;
+
+        Attempt(Race race, StorageStubProvider.StubHolder holder) {
+            this.race = race;
+            this.holder = holder;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReadObjectRequest> requestStream) {
+            this.call = requestStream;
+        }
+
+        @Override
+        public void onNext(ReadObjectResponse response) {
+            if (!receivedFirst) {
+                receivedFirst = true;
+                policy.recordFirstByte(System.nanoTime() - startNanos);
+                race.firstByteOrDone.countDown();
+            }
+            if (response.hasChecksummedData()) {
+                bytes.addAndGet(response.getChecksummedData().getContent().size());
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            race.firstByteOrDone.countDown();
+            race.onDone(this);
+        }
+
+        @Override
+        public void onCompleted() {
+            race.firstByteOrDone.countDown();
+            race.onDone(this);
+        }
+
+        void cancel() {
+            ClientCallStreamObserver<ReadObjectRequest> c = call;
+            if (c != null) {
+                c.cancel("Hedged read lost the race", null);
+            }
+        }
+    }
+}
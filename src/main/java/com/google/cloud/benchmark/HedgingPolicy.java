@@ -0,0 +1,82 @@
+package com.google.cloud.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+/**
+ * Decides how long a read may wait for its first byte before a hedge request
+ * is sent. The delay is either fixed or tracks the p95 of recently observed
+ * time-to-first-byte samples.
+ */
+public class HedgingPolicy {
+    private static final int WINDOW_SIZE = 1000;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final boolean tracking;
+    private final long fixedDelayNanos;
+    private final DescriptiveStatistics window = new DescriptiveStatistics(WINDOW_SIZE);
+    private long samples = 0;
+    private volatile long trackedDelayNanos;
+
+    public HedgingPolicy(boolean tracking, long fixedDelayMs) {
+        this.tracking = tracking;
+        this.fixedDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, fixedDelayMs));
+        this.trackedDelayNanos = fixedDelayNanos;
+    }
+
+    /**
+     * Create a policy from the --hedge parameters.
+     *
+     * @param parameters Benchmark parameters
+     * @return The policy, or null if hedging is disabled
+     */
+    public static HedgingPolicy fromParameters(BenchmarkParameters parameters) {
+        String mode = parameters.hedge == null ? "" : parameters.hedge.toLowerCase();
+        switch (mode) {
+            case "":
+            case "none":
+                return null;
+            case "fixed":
+                return new HedgingPolicy(false, parameters.hedgeDelayMs);
+            case "p95":
+                return new HedgingPolicy(true, parameters.hedgeDelayMs);
+            default:
+                System.err.println("Unknown hedge policy: " + parameters.hedge + ", hedging disabled");
+                return null;
+        }
+    }
+
+    /**
+     * @return How long to wait for the first byte before hedging, in nanoseconds
+     */
+    public long getDelayNanos() {
+        return tracking ? trackedDelayNanos : fixedDelayNanos;
+    }
+
+    /**
+     * Record the time an attempt took to produce its first byte. Only used by
+     * the tracking policy; until enough samples exist the fixed delay applies.
+     *
+     * @param nanos Time to first byte in nanoseconds
+     */
+    public void recordFirstByte(long nanos) {
+        if (!tracking) {
+            return;
+        }
+        synchronized (window) {
+            window.addValue(nanos);
+            samples++;
+            if (samples == MIN_SAMPLES || (samples > MIN_SAMPLES && samples % RECOMPUTE_INTERVAL == 0)) {
+                trackedDelayNanos = (long) window.getPercentile(95);
+            }
+        }
+    }
+
+    public String describe() {
+        if (tracking) {
+            return "p95 of time-to-first-byte (initial " + TimeUnit.NANOSECONDS.toMillis(fixedDelayNanos) + " ms)";
+        }
+        return "fixed " + TimeUnit.NANOSECONDS.toMillis(fixedDelayNanos) + " ms";
+    }
+}
@@ -0,0 +1,291 @@
+package com.google.cloud.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Empty;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.google.storage.v2.ChecksummedData;
+import com.google.storage.v2.DeleteObjectRequest;
+import com.google.storage.v2.GetObjectRequest;
+import com.google.storage.v2.ListObjectsRequest;
+import com.google.storage.v2.ListObjectsResponse;
+import com.google.storage.v2.Object;
+import com.google.storage.v2.ReadObjectRequest;
+import com.google.storage.v2.ReadObjectResponse;
+import com.google.storage.v2.StorageGrpc;
+import com.google.storage.v2.UpdateObjectRequest;
+import com.google.storage.v2.WriteObjectRequest;
+import com.google.storage.v2.WriteObjectResponse;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic Storage service for --transport=inprocess. Every object exists,
+ * with the size it was last written with or --inprocess_object_size, and
+ * reads stream random content in 2 MiB messages like the real service.
+ * <p>
+ * The in-process transport normally hands message objects straight to the
+ * other side. Here responses are sent as serialized bytes and requests are
+ * serialized before the server sees them, so the client still pays for
+ * protobuf parsing and serialization. Server work is kept small: read
+ * responses are serialized once up front and request content is aliased
+ * instead of copied.
+ */
+public class InProcessStorageServer {
+    private static final String NAME = "gcs-bench-inprocess";
+    private static final int CHUNK_SIZE = 2 * 1024 * 1024;
+    private static final int MAX_CACHED_RESPONSES = 1024;
+    private static final long GENERATION = 1;
+
+    private static final MethodDescriptor.Marshaller<byte[]> SERIALIZED = new MethodDescriptor.Marshaller<byte[]>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new KnownLengthInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return ByteStreams.toByteArray(stream);
+            } catch (IOException e) {
+                throw Status.INTERNAL.withCause(e).asRuntimeException();
+            }
+        }
+    };
+
+    private final Server server;
+    private final long defaultSize;
+    private final ByteString content;
+    private final byte[] fullChunk;
+    private final ConcurrentHashMap<String, Long> writtenSizes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, byte[]> partialChunks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, byte[]> listPages = new ConcurrentHashMap<>();
+
+    private InProcessStorageServer(BenchmarkParameters parameters) throws IOException {
+        this.defaultSize = parameters.inprocessObjectSize;
+        this.content = ByteString.copyFrom(RandomData.generate(CHUNK_SIZE, parameters.compressionRatio));
+        this.fullChunk = readResponse(CHUNK_SIZE);
+        this.server = InProcessServerBuilder.forName(NAME)
+                .directExecutor()
+                .addService(service())
+                .build()
+                .start();
+    }
+
+    /**
+     * Start the server for --transport=inprocess.
+     */
+    public static InProcessStorageServer start(BenchmarkParameters parameters) {
+        try {
+            return new InProcessStorageServer(parameters);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start in-process server", e);
+        }
+    }
+
+    /**
+     * @return Builder for a channel to the server
+     */
+    public static InProcessChannelBuilder channelBuilder() {
+        return InProcessChannelBuilder.forName(NAME);
+    }
+
+    public void shutdown() {
+        server.shutdownNow();
+        try {
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ServerServiceDefinition service() {
+        return ServerServiceDefinition.builder(StorageGrpc.SERVICE_NAME)
+                .addMethod(method(StorageGrpc.getReadObjectMethod(), ReadObjectRequest.parser()),
+                        ServerCalls.asyncServerStreamingCall(this::readObject))
+                .addMethod(method(StorageGrpc.getWriteObjectMethod(), WriteObjectRequest.parser()),
+                        ServerCalls.asyncClientStreamingCall(this::writeObject))
+                .addMethod(method(StorageGrpc.getGetObjectMethod(), GetObjectRequest.parser()),
+                        ServerCalls.asyncUnaryCall((request, response) -> complete(response,
+                                object(request.getBucket(), request.getObject()))))
+                .addMethod(method(StorageGrpc.getListObjectsMethod(), ListObjectsRequest.parser()),
+                        ServerCalls.asyncUnaryCall(this::listObjects))
+                .addMethod(method(StorageGrpc.getDeleteObjectMethod(), DeleteObjectRequest.parser()),
+                        ServerCalls.asyncUnaryCall((request, response) -> complete(response,
+                                Empty.getDefaultInstance())))
+                .addMethod(method(StorageGrpc.getUpdateObjectMethod(), UpdateObjectRequest.parser()),
+                        ServerCalls.asyncUnaryCall((request, response) -> complete(response,
+                                object(request.getObject().getBucket(), request.getObject().getName()).toBuilder()
+                                        .putAllMetadata(request.getObject().getMetadataMap())
+                                        .build())))
+                .build();
+    }
+
+    private void readObject(ReadObjectRequest request, StreamObserver<byte[]> responseObserver) {
+        long size = sizeOf(request.getObject());
+        if (request.getReadOffset() < 0 || request.getReadOffset() > size) {
+            responseObserver.onError(Status.OUT_OF_RANGE.withDescription("Read offset past end of object")
+                    .asRuntimeException());
+            return;
+        }
+        long available = size - request.getReadOffset();
+        long length = request.getReadLimit() > 0 ? Math.min(request.getReadLimit(), available) : available;
+
+        // Send as fast as the client takes messages, without queueing the
+        // whole object in memory
+        ServerCallStreamObserver<byte[]> call = (ServerCallStreamObserver<byte[]>) responseObserver;
+        // Hedged reads cancel the losing stream; stop quietly instead of throwing
+        call.setOnCancelHandler(() -> {
+        });
+        call.setOnReadyHandler(new Runnable() {
+            private long remaining = length;
+            private boolean completed = false;
+
+            @Override
+            public void run() {
+                while (!completed && call.isReady() && !call.isCancelled()) {
+                    if (remaining == 0) {
+                        completed = true;
+                        call.onCompleted();
+                        return;
+                    }
+                    int n = (int) Math.min(CHUNK_SIZE, remaining);
+                    call.onNext(n == CHUNK_SIZE ? fullChunk : partialChunk(n));
+                    remaining -= n;
+                }
+            }
+        });
+    }
+
+    private StreamObserver<WriteObjectRequest> writeObject(StreamObserver<byte[]> responseObserver) {
+        return new StreamObserver<WriteObjectRequest>() {
+            private String bucket = "";
+            private String name = "";
+            private long size = 0;
+
+            @Override
+            public void onNext(WriteObjectRequest request) {
+                if (request.hasWriteObjectSpec()) {
+                    bucket = request.getWriteObjectSpec().getResource().getBucket();
+                    name = request.getWriteObjectSpec().getResource().getName();
+                }
+                if (request.hasChecksummedData()) {
+                    size += request.getChecksummedData().getContent().size();
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                writtenSizes.put(name, size);
+                complete(responseObserver, WriteObjectResponse.newBuilder()
+                        .setResource(object(bucket, name))
+                        .build());
+            }
+        };
+    }
+
+    private void listObjects(ListObjectsRequest request, StreamObserver<byte[]> responseObserver) {
+        String key = request.getPrefix() + "|" + request.getPageSize();
+        byte[] page = listPages.get(key);
+        if (page == null) {
+            ListObjectsResponse.Builder response = ListObjectsResponse.newBuilder();
+            int count = request.getPageSize() > 0 ? request.getPageSize() : 1000;
+            for (int i = 0; i < count; i++) {
+                response.addObjects(object(request.getParent(), request.getPrefix() + "object-" + i));
+            }
+            page = response.build().toByteArray();
+            if (listPages.size() < MAX_CACHED_RESPONSES) {
+                listPages.put(key, page);
+            }
+        }
+        responseObserver.onNext(page);
+        responseObserver.onCompleted();
+    }
+
+    private Object object(String bucket, String name) {
+        return Object.newBuilder()
+                .setBucket(bucket)
+                .setName(name)
+                .setSize(sizeOf(name))
+                .setGeneration(GENERATION)
+                .build();
+    }
+
+    private long sizeOf(String name) {
+        return writtenSizes.getOrDefault(name, defaultSize);
+    }
+
+    private byte[] partialChunk(int length) {
+        byte[] chunk = partialChunks.get(length);
+        if (chunk == null) {
+            chunk = readResponse(length);
+            if (partialChunks.size() < MAX_CACHED_RESPONSES) {
+                partialChunks.put(length, chunk);
+            }
+        }
+        return chunk;
+    }
+
+    private byte[] readResponse(int length) {
+        return ReadObjectResponse.newBuilder()
+                .setChecksummedData(ChecksummedData.newBuilder().setContent(content.substring(0, length)))
+                .build()
+                .toByteArray();
+    }
+
+    private static void complete(StreamObserver<byte[]> responseObserver, MessageLite response) {
+        responseObserver.onNext(response.toByteArray());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Server side of a method: requests arrive serialized and are parsed
+     * with their content aliased, responses leave as bytes.
+     */
+    private static <ReqT> MethodDescriptor<ReqT, byte[]> method(MethodDescriptor<?, ?> method,
+            Parser<ReqT> parser) {
+        MethodDescriptor.Marshaller<ReqT> requests = new MethodDescriptor.Marshaller<ReqT>() {
+            @Override
+            public InputStream stream(ReqT value) {
+                return new KnownLengthInputStream(((MessageLite) value).toByteArray());
+            }
+
+            @Override
+            public ReqT parse(InputStream stream) {
+                try {
+                    CodedInputStream input = CodedInputStream.newInstance(ByteStreams.toByteArray(stream));
+                    input.enableAliasing(true);
+                    return parser.parseFrom(input);
+                } catch (IOException e) {
+                    throw Status.INTERNAL.withCause(e).asRuntimeException();
+                }
+            }
+        };
+        return method.toBuilder(requests, SERIALIZED).build();
+    }
+
+    private static class KnownLengthInputStream extends ByteArrayInputStream implements KnownLength {
+        KnownLengthInputStream(byte[] buf) {
+            super(buf);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.google.cloud.benchmark;
+
+/**
+ * Picks which object of the --object_start/--object_stop range an operation
+ * uses.
+ */
+public interface KeyDistribution {
+
+    /**
+     * @param threadId Logical thread issuing the operation
+     * @return Index into the key range, in [0, key count)
+     */
+    int next(int threadId);
+}
@@ -0,0 +1,146 @@
+package com.google.cloud.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.commons.math3.distribution.ZipfDistribution;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+
+/**
+ * Key distributions selected by --key_distribution: uniform, zipfian,
+ * hotset, sequential and scrambled (zipfian with the popular keys spread
+ * over the range).
+ */
+public class KeyDistributions {
+
+    /**
+     * Create the key distribution for the given parameters.
+     *
+     * @param keyCount Number of keys in the range
+     */
+    public static KeyDistribution fromParameters(BenchmarkParameters parameters, int keyCount) {
+        if (keyCount <= 1) {
+            return threadId -> 0;
+        }
+        switch (parameters.keyDistribution.toLowerCase()) {
+            case "uniform":
+                return threadId -> ThreadLocalRandom.current().nextInt(keyCount);
+            case "zipfian":
+                return new Zipfian(keyCount, parameters.zipfSkew);
+            case "scrambled":
+                return new Scrambled(new Zipfian(keyCount, parameters.zipfSkew), keyCount);
+            case "hotset":
+                return new HotSet(keyCount, parameters.hotSetFraction, parameters.hotSetProbability);
+            case "sequential":
+                return new Sequential(keyCount, parameters.threads);
+            default:
+                throw new IllegalArgumentException("Unknown key distribution: " + parameters.keyDistribution);
+        }
+    }
+
+    /**
+     * Zipf-distributed keys where key 0 is the most popular. Sampling uses
+     * rejection-inversion, so setup is constant time for any key count.
+     */
+    static class Zipfian implements KeyDistribution {
+        private final ThreadLocal<ZipfDistribution> distribution;
+
+        Zipfian(int keyCount, double skew) {
+            if (skew <= 0) {
+                throw new IllegalArgumentException("--zipf_skew must be positive");
+            }
+            this.distribution = ThreadLocal.withInitial(() -> {
+                JDKRandomGenerator random = new JDKRandomGenerator();
+                random.setSeed(ThreadLocalRandom.current().nextLong());
+                return new ZipfDistribution(random, keyCount, skew);
+            });
+        }
+
+        @Override
+        public int next(int threadId) {
+            return distribution.get().sample() - 1;
+        }
+    }
+
+    /**
+     * Zipfian popularity with the ranks hashed over the key range so that hot
+     * keys are not adjacent in name order.
+     */
+    static class Scrambled implements KeyDistribution {
+        private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+        private static final long FNV_PRIME = 0x100000001B3L;
+
+        private final KeyDistribution ranks;
+        private final int keyCount;
+
+        Scrambled(KeyDistribution ranks, int keyCount) {
+            this.ranks = ranks;
+            this.keyCount = keyCount;
+        }
+
+        @Override
+        public int next(int threadId) {
+            return (int) Math.floorMod(fnv1a(ranks.next(threadId)), (long) keyCount);
+        }
+
+        private static long fnv1a(int value) {
+            long hash = FNV_OFFSET_BASIS;
+            for (int i = 0; i < 4; i++) {
+                hash ^= (value >>> (i * 8)) & 0xFF;
+                hash *= FNV_PRIME;
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * A hot set made of the first fraction of the keys receives the given
+     * share of the operations; the remaining keys share the rest uniformly.
+     */
+    static class HotSet implements KeyDistribution {
+        private final int keyCount;
+        private final int hotKeys;
+        private final double hotProbability;
+
+        HotSet(int keyCount, double hotFraction, double hotProbability) {
+            if (hotFraction <= 0 || hotFraction >= 1 || hotProbability < 0 || hotProbability > 1) {
+                throw new IllegalArgumentException(
+                        "--hot_set_fraction must be in (0, 1) and --hot_set_probability in [0, 1]");
+            }
+            this.keyCount = keyCount;
+            this.hotKeys = Math.max(1, Math.min(keyCount - 1, (int) (keyCount * hotFraction)));
+            this.hotProbability = hotProbability;
+        }
+
+        @Override
+        public int next(int threadId) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < hotProbability) {
+                return random.nextInt(hotKeys);
+            }
+            return random.nextInt(hotKeys, keyCount);
+        }
+    }
+
+    /**
+     * Each thread walks the key range in order, starting from its own
+     * evenly spaced position and wrapping at the end.
+     */
+    static class Sequential implements KeyDistribution {
+        private final int keyCount;
+        private final int threads;
+        private final AtomicLongArray positions;
+
+        Sequential(int keyCount, int threads) {
+            this.keyCount = keyCount;
+            this.threads = Math.max(1, threads);
+            this.positions = new AtomicLongArray(this.threads);
+        }
+
+        @Override
+        public int next(int threadId) {
+            int slot = threadId % threads;
+            long start = (long) slot * keyCount / threads;
+            return (int) ((start + positions.getAndIncrement(slot)) % keyCount);
+        }
+    }
+}
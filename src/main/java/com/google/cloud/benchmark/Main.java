@@ -1,9 +1,17 @@
 package com.google.cloud.benchmark;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import picocli.CommandLine;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && "compare".equals(args[0])) {
+            System.exit(ResultComparison.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         BenchmarkParameters parameters = new BenchmarkParameters();
         CommandLine cmd = new CommandLine(parameters);
 
@@ -13,88 +21,252 @@ public class Main {
                 CommandLine.usage(parameters, System.out);
                 return;
             }
+            if (parameters.ctest > 0 || parameters.sweep.contains("ctest")) {
+                // Before any lookup, e.g. by an earlier sweep point
+                ConnectionTest.disableAddressCache();
+            }
 
-            // Warn about unimplemented features
-            warnUnimplementedFeatures(parameters);
-
-            StatWatcher watcher = new StatWatcher();
-            BenchmarkRunner runner;
-
-            if ("grpc".equalsIgnoreCase(parameters.client)) {
-                // Create channel factory
-                java.util.function.Supplier<io.grpc.ManagedChannel> channelCreator = () -> ChannelFactory
-                        .createChannel(parameters, false);
-
-                // Determine channel policy
-                String cpolicy = parameters.cpolicy;
-                if (cpolicy == null || cpolicy.isEmpty()) {
-                    // Default to perthread if not specified
-                    cpolicy = "perthread";
-                }
-
-                // Create appropriate storage stub provider
-                StorageStubProvider stubProvider;
-                switch (cpolicy.toLowerCase()) {
-                    case "const":
-                        stubProvider = new ConstChannelPool(channelCreator, parameters);
-                        System.out.println("Using const channel policy (single shared channel)");
-                        break;
-                    case "perthread":
-                        stubProvider = new PerThreadChannelPool(channelCreator, parameters);
-                        System.out.println("Using perthread channel policy");
-                        break;
-                    case "percall":
-                        stubProvider = new PerCallChannelPool(channelCreator, parameters);
-                        System.out.println("Using percall channel policy (new channel per call)");
-                        break;
-                    case "pool":
-                        int poolSize = parameters.carg > 0 ? parameters.carg : 1;
-                        stubProvider = new RoundRobinChannelPool(channelCreator, parameters, poolSize);
-                        System.out.println("Using pool channel policy with " + poolSize + " channels");
-                        break;
-                    case "bpool":
-                    case "spool":
-                        System.err.println("WARN: " + cpolicy + " policy not yet implemented, using perthread");
-                        stubProvider = new PerThreadChannelPool(channelCreator, parameters);
-                        break;
-                    default:
-                        System.err.println("Unknown cpolicy: " + cpolicy + ", defaulting to perthread");
-                        stubProvider = new PerThreadChannelPool(channelCreator, parameters);
-                }
-
-                runner = new GrpcRunner(parameters, watcher, stubProvider);
+            if (parameters.capacity) {
+                CapacitySearch.run(cmd, args, parameters);
+            } else if (!parameters.autotune.isEmpty()) {
+                AutoTuner.run(cmd, args, parameters);
+            } else if (!parameters.sweep.isEmpty()) {
+                runSweep(cmd, args, parameters);
             } else {
-                runner = new GcsRunner(parameters, watcher);
+                runBenchmark(cmd, parameters, Collections.emptyMap());
+            }
+        } catch (CommandLine.ParameterException e) {
+            System.err.println(e.getMessage());
+            cmd.usage(System.err);
+            System.exit(1);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Outcome of one benchmark run.
+     */
+    static class RunResult {
+        final StatWatcher watcher;
+        /** Length of the timed phase; with --rate from the first due time to the last completion */
+        final long durationMs;
+
+        RunResult(StatWatcher watcher, long durationMs) {
+            this.watcher = watcher;
+            this.durationMs = durationMs;
+        }
+
+        double throughputMibps() {
+            return durationMs == 0 ? 0.0 : watcher.getTotalBytes() / 1024.0 / 1024.0 / (durationMs / 1000.0);
+        }
+    }
+
+    /**
+     * Run every point of --sweep in this JVM, each with its own parameters,
+     * stub provider and stats.
+     */
+    private static void runSweep(CommandLine cmd, String[] args, BenchmarkParameters parameters) {
+        ParameterSweep sweep;
+        try {
+            sweep = ParameterSweep.parse(parameters.sweep, cmd);
+        } catch (IllegalArgumentException e) {
+            throw new CommandLine.ParameterException(cmd, e.getMessage());
+        }
+        List<Map<String, String>> points = sweep.points();
+        // Parse every point up front so a bad value fails before anything runs
+        List<BenchmarkParameters> pointParameters = new ArrayList<>();
+        for (Map<String, String> point : points) {
+            pointParameters.add(ParameterSweep.apply(args, point));
+        }
+        System.out.printf("Sweeping %s: %d points%n", String.join(", ", sweep.names()), points.size());
+
+        List<RunResult> results = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            System.out.printf("%n=== Sweep point %d/%d: %s ===%n", i + 1, points.size(),
+                    ParameterSweep.describe(points.get(i)));
+            // Leave the garbage of the previous point out of this one
+            System.gc();
+            results.add(runBenchmark(cmd, pointParameters.get(i), points.get(i)));
+        }
+        ResultPrinter.printSweepSummary(points, results);
+    }
+
+    /**
+     * Run one benchmark and print and record its results.
+     *
+     * @param sweepPoint Swept options and their values, empty outside a sweep
+     */
+    static RunResult runBenchmark(CommandLine cmd, BenchmarkParameters parameters, Map<String, String> sweepPoint) {
+        // Warn about unimplemented features
+        warnUnimplementedFeatures(parameters);
+
+        if (!parameters.grpcCompression.isEmpty() && io.grpc.CompressorRegistry.getDefaultInstance()
+                .lookupCompressor(parameters.grpcCompression) == null) {
+            throw new CommandLine.ParameterException(cmd,
+                    "Unknown --grpc_compression: " + parameters.grpcCompression);
+        }
+
+        try {
+            String channelArgs = ChannelFactory.getSettings(parameters).describe();
+            if (!channelArgs.isEmpty() && "grpc".equalsIgnoreCase(parameters.client)) {
+                System.out.println("Using channel args: " + channelArgs);
             }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new CommandLine.ParameterException(cmd, e.getMessage());
+        }
 
-            long startTime = System.nanoTime();
-            runner.run();
-            long endTime = System.nanoTime();
+        if (parameters.adaptiveWarmup && (!parameters.traceReplay.isEmpty() || parameters.warmupWindowMs <= 0
+                || parameters.warmupMaxSec <= 0)) {
+            throw new CommandLine.ParameterException(cmd, "--adaptive_warmup needs positive --warmup_window_ms and "
+                    + "--warmup_max_sec and cannot be combined with --trace_replay");
+        }
+        if (parameters.rate > 0 && (!parameters.traceReplay.isEmpty() || parameters.ctest > 0)) {
+            throw new CommandLine.ParameterException(cmd, "--rate cannot be combined with --trace_replay or --ctest");
+        }
 
-            long durationMs = (endTime - startTime) / 1_000_000;
+        if (!parameters.jfrFile.isEmpty()) {
+            try {
+                BenchmarkEvents.configuration(parameters);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.ParameterException(cmd, e.getMessage());
+            }
+            if (!sweepPoint.isEmpty()) {
+                // One recording per point instead of each point overwriting the last
+                parameters.jfrFile = BenchmarkEvents.pointFile(parameters.jfrFile,
+                        ParameterSweep.describe(sweepPoint));
+            }
+        }
 
-            ResultPrinter.printResults(watcher.getLatencies(), watcher.getTotalBytes(), durationMs);
+        if (parameters.mtest > 0) {
+            if (!parameters.workload.isEmpty()) {
+                throw new CommandLine.ParameterException(cmd, "--mtest cannot be combined with --workload");
+            }
+            parameters.runs = parameters.mtest;
+        }
 
-            // Write results to files if specified
-            if (!parameters.reportFile.isEmpty()) {
-                ReportWriter.writeReport(watcher, parameters, parameters.reportFile,
-                        parameters.reportTag, durationMs);
+        InProcessStorageServer inProcessServer = null;
+        if ("inprocess".equalsIgnoreCase(parameters.transport)) {
+            if (!"grpc".equalsIgnoreCase(parameters.client) || parameters.ctest > 0 || parameters.rr) {
+                throw new CommandLine.ParameterException(cmd,
+                        "--transport=inprocess needs --client=grpc and cannot be combined with --ctest or --rr");
+            }
+            if (!"insecure".equalsIgnoreCase(parameters.cred)) {
+                System.out.println("In-process transport: call credentials disabled");
+                parameters.cred = "insecure";
+            }
+            inProcessServer = InProcessStorageServer.start(parameters);
+            System.out.println("Serving synthetic objects in-process (no sockets)");
+        } else if (!"network".equalsIgnoreCase(parameters.transport)) {
+            throw new CommandLine.ParameterException(cmd, "Unknown --transport: " + parameters.transport);
+        }
+
+        StatWatcher watcher = new StatWatcher();
+        BenchmarkRunner runner;
+
+        if (parameters.ctest > 0) {
+            runner = new ConnectionTest(parameters, watcher, new WireStatsInterceptor(watcher));
+        } else if ("grpc".equalsIgnoreCase(parameters.client)) {
+            // Create channel factory
+            WireStatsInterceptor wireStats = new WireStatsInterceptor(watcher, parameters.rr);
+            java.util.function.Supplier<io.grpc.ManagedChannel> channelCreator = () -> ChannelFactory
+                    .createChannel(parameters, false, wireStats);
+
+            // Determine channel policy
+            String cpolicy = parameters.cpolicy;
+            if (cpolicy == null || cpolicy.isEmpty()) {
+                // Default to perthread if not specified
+                cpolicy = "perthread";
+            }
+
+            // Create appropriate storage stub provider
+            StorageStubProvider stubProvider;
+            switch (cpolicy.toLowerCase()) {
+                case "const":
+                    stubProvider = new ConstChannelPool(channelCreator, parameters);
+                    System.out.println("Using const channel policy (single shared channel)");
+                    break;
+                case "perthread":
+                    stubProvider = new PerThreadChannelPool(channelCreator, parameters);
+                    System.out.println("Using perthread channel policy");
+                    break;
+                case "percall":
+                    stubProvider = new PerCallChannelPool(channelCreator, parameters);
+                    System.out.println("Using percall channel policy (new channel per call)");
+                    break;
+                case "pool":
+                    int poolSize = parameters.carg > 0 ? parameters.carg : 1;
+                    stubProvider = new RoundRobinChannelPool(channelCreator, parameters, poolSize);
+                    System.out.println("Using pool channel policy with " + poolSize + " channels");
+                    break;
+                case "bpool":
+                case "spool":
+                    System.err.println("WARN: " + cpolicy + " policy not yet implemented, using perthread");
+                    stubProvider = new PerThreadChannelPool(channelCreator, parameters);
+                    break;
+                default:
+                    System.err.println("Unknown cpolicy: " + cpolicy + ", defaulting to perthread");
+                    stubProvider = new PerThreadChannelPool(channelCreator, parameters);
+            }
+
+            runner = new GrpcRunner(parameters, watcher, stubProvider);
+        } else {
+            runner = new GcsRunner(parameters, watcher);
+        }
+
+        watcher.addPhaseSampler(new SchedulerStats());
+        watcher.addPhaseSampler(new MemoryStats());
+        long startTime = System.nanoTime();
+        runner.run();
+        long endTime = System.nanoTime();
+        if (inProcessServer != null) {
+            inProcessServer.shutdown();
+        }
+
+        // Warmup, prefill and preconnect are not part of any rate
+        long durationMs = watcher.getTimedPhaseMs() >= 0 ? watcher.getTimedPhaseMs()
+                : (endTime - startTime) / 1_000_000;
+
+        ResultPrinter.printResults(watcher.getLatencies(), watcher.getTotalBytes(), durationMs);
+        if (parameters.rate > 0) {
+            ResultPrinter.printOpenLoopStats(watcher, parameters.rate, durationMs);
+        }
+        if (watcher.getOperationTypes().size() > 1 || Operation.fromParameters(parameters).isMetadata()) {
+            ResultPrinter.printOperationBreakdown(watcher, durationMs);
+        }
+        if (!"none".equalsIgnoreCase(parameters.hedge)) {
+            ResultPrinter.printHedgeStats(watcher);
+        }
+        if (watcher.getWarmup().adaptive) {
+            ResultPrinter.printWarmupStats(watcher, parameters);
+        }
+        ResultPrinter.printWireStats(watcher);
+        ResultPrinter.printMemoryStats(watcher);
+        if (parameters.rr) {
+            ResultPrinter.printSubchannelStats(watcher);
+        }
+
+        // Write results to files if specified
+        if (!parameters.reportFile.isEmpty()) {
+            if (ReportWriter.writeReport(watcher, parameters, parameters.reportFile,
+                    parameters.reportTag, durationMs, sweepPoint)) {
                 System.out.println("Report written to: " + parameters.reportFile);
             }
+        }
 
-            if (!parameters.dataFile.isEmpty()) {
-                ReportWriter.writeData(watcher, parameters, parameters.dataFile, parameters.reportTag);
+        if (!parameters.dataFile.isEmpty()) {
+            String dataTag = parameters.reportTag;
+            if (!sweepPoint.isEmpty()) {
+                // Keep the points of a sweep apart in the data file
+                dataTag = (dataTag.isEmpty() ? "" : dataTag + ";") + ParameterSweep.describe(sweepPoint);
+            }
+            if (ReportWriter.writeData(watcher, parameters, parameters.dataFile, dataTag)) {
                 System.out.println("Data written to: " + parameters.dataFile);
             }
-
-        } catch (CommandLine.ParameterException e) {
-            System.err.println(e.getMessage());
-            cmd.usage(System.err);
-            System.exit(1);
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.exit(1);
         }
+
+        return new RunResult(watcher, durationMs);
     }
 
     private static void warnUnimplementedFeatures(BenchmarkParameters params) {
@@ -116,12 +288,6 @@ public class Main {
         if (!params.prometheusEndpoint.isEmpty()) {
             System.err.println("WARN: --prometheus_endpoint not yet implemented");
         }
-        if (params.ctest > 0) {
-            System.err.println("WARN: --ctest not yet implemented");
-        }
-        if (params.mtest > 0) {
-            System.err.println("WARN: --mtest not yet implemented");
-        }
         if (params.grpcAdmin > 0) {
             System.err.println("WARN: --grpc_admin not yet implemented");
         }
@@ -143,11 +309,20 @@ public class Main {
         if (!params.sslCert.isEmpty()) {
             System.err.println("WARN: --ssl_cert not yet implemented");
         }
-        if (params.rr) {
-            System.err.println("WARN: --rr (round_robin) not yet implemented (using pick_first)");
+        if (params.rr && !"grpc".equalsIgnoreCase(params.client)) {
+            System.err.println("WARN: --rr is only supported with --client=grpc");
         }
         if (params.txZerocopy) {
             System.err.println("WARN: --tx_zerocopy not yet implemented");
         }
+        if (!"none".equalsIgnoreCase(params.hedge) && !"grpc".equalsIgnoreCase(params.client)) {
+            System.err.println("WARN: --hedge is only supported with --client=grpc");
+        }
+        if (!params.grpcCompression.isEmpty() && !"grpc".equalsIgnoreCase(params.client)) {
+            System.err.println("WARN: --grpc_compression is only supported with --client=grpc");
+        }
+        if (!"none".equalsIgnoreCase(params.hedge) && !"discard".equalsIgnoreCase(params.sink)) {
+            System.err.println("WARN: --sink is not applied to hedged reads (bytes are discarded)");
+        }
     }
 }
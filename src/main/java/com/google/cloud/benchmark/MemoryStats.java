@@ -0,0 +1,193 @@
+package com.google.cloud.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocator;
+import io.grpc.netty.shaded.io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.grpc.netty.shaded.io.netty.util.internal.PlatformDependent;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Allocation, GC and off-heap memory during the timed phase of a run.
+ * Per-thread allocation counters vanish with their thread, so they are
+ * sampled periodically together with direct memory, and the last value seen
+ * per thread is kept. GC pauses come from collector notifications;
+ * concurrent cycles are not counted as pauses.
+ */
+public class MemoryStats implements StatWatcher.PhaseSampler {
+    private static final long SAMPLE_INTERVAL_MS = 100;
+
+    /**
+     * Memory figures of one run.
+     */
+    public static class Summary {
+        public static final Summary EMPTY = new Summary(0, 0, 0, 0, 0, 0, 0);
+
+        public final long allocatedBytes;
+        public final long gcPauses;
+        public final long gcPauseMs;
+        public final long gcMaxPauseMs;
+        /** Sum of the peak usage of every heap pool */
+        public final long peakHeapBytes;
+        /** JDK direct buffers plus Netty's own direct memory counter */
+        public final long peakDirectBytes;
+        /** Memory held by Netty's default pooled allocator */
+        public final long peakNettyPooledBytes;
+
+        public Summary(long allocatedBytes, long gcPauses, long gcPauseMs, long gcMaxPauseMs,
+                long peakHeapBytes, long peakDirectBytes, long peakNettyPooledBytes) {
+            this.allocatedBytes = allocatedBytes;
+            this.gcPauses = gcPauses;
+            this.gcPauseMs = gcPauseMs;
+            this.gcMaxPauseMs = gcMaxPauseMs;
+            this.peakHeapBytes = peakHeapBytes;
+            this.peakDirectBytes = peakDirectBytes;
+            this.peakNettyPooledBytes = peakNettyPooledBytes;
+        }
+    }
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<Long, Long> baselineAllocated = new HashMap<>();
+    private final Map<Long, Long> latestAllocated = new HashMap<>();
+    private final AtomicLong gcPauses = new AtomicLong(0);
+    private final AtomicLong gcPauseMs = new AtomicLong(0);
+    private final AtomicLong gcMaxPauseMs = new AtomicLong(0);
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener gcListener = this::onGc;
+    private volatile long peakDirectBytes;
+    private volatile long peakNettyPooledBytes;
+    private volatile boolean running;
+    private Thread sampler;
+
+    /**
+     * Record the current counters and start sampling.
+     */
+    @Override
+    public void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter && !gc.getName().contains("Cycles")
+                    && !gc.getName().contains("Concurrent")) {
+                ((NotificationEmitter) gc).addNotificationListener(gcListener, null, null);
+                emitters.add((NotificationEmitter) gc);
+            }
+        }
+        synchronized (this) {
+            sampleAllocations(baselineAllocated);
+            latestAllocated.clear();
+        }
+        running = true;
+        sampler = new Thread(() -> {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "gcs-bench-memory-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stop sampling and store the totals since {@link #start()} in the
+     * watcher.
+     */
+    @Override
+    public void stop(StatWatcher watcher) {
+        running = false;
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException e) {
+                // Already gone
+            }
+        }
+
+        long allocated = 0;
+        synchronized (this) {
+            for (Map.Entry<Long, Long> entry : latestAllocated.entrySet()) {
+                allocated += entry.getValue() - baselineAllocated.getOrDefault(entry.getKey(), 0L);
+            }
+        }
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        watcher.setMemory(new Summary(allocated, gcPauses.get(), gcPauseMs.get(), gcMaxPauseMs.get(),
+                peakHeap, peakDirectBytes, peakNettyPooledBytes));
+    }
+
+    private void sample() {
+        synchronized (this) {
+            sampleAllocations(latestAllocated);
+        }
+        long direct = Math.max(0, PlatformDependent.usedDirectMemory());
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                direct += pool.getMemoryUsed();
+            }
+        }
+        peakDirectBytes = Math.max(peakDirectBytes, direct);
+        PooledByteBufAllocatorMetric pooled = PooledByteBufAllocator.DEFAULT.metric();
+        peakNettyPooledBytes = Math.max(peakNettyPooledBytes, pooled.usedDirectMemory() + pooled.usedHeapMemory());
+    }
+
+    private void sampleAllocations(Map<Long, Long> counters) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = allocations.getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                counters.put(ids[i], bytes[i]);
+            }
+        }
+    }
+
+    private void onGc(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+                .from((CompositeData) notification.getUserData());
+        long durationMs = info.getGcInfo().getDuration();
+        gcPauses.incrementAndGet();
+        gcPauseMs.addAndGet(durationMs);
+        gcMaxPauseMs.accumulateAndGet(durationMs, Math::max);
+    }
+}
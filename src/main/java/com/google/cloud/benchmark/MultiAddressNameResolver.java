@@ -0,0 +1,167 @@
+package com.google.cloud.benchmark;
+
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.NameResolver;
+import io.grpc.NameResolverProvider;
+import io.grpc.NameResolverRegistry;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Name resolver used by --rr. It hands every backend address to the load
+ * balancer as its own address group, so round_robin opens a subchannel per
+ * backend instead of the single connection pick_first uses. Addresses come
+ * from --rr_addresses, or from all DNS records of the endpoint. round_robin
+ * merges identical addresses, so more connections to one backend need more
+ * channels (e.g. --cpolicy=pool).
+ */
+public class MultiAddressNameResolver extends NameResolver {
+    static final String SCHEME = "gcs-bench-rr";
+
+    private static boolean registered;
+
+    // --rr_addresses of the channel, empty for all records of the endpoint
+    private final String backends;
+    private final SynchronizationContext syncContext;
+    private final Executor offloadExecutor;
+    private Listener2 listener;
+    private boolean resolving;
+    private boolean shutdown;
+
+    MultiAddressNameResolver(String backends, Args args) {
+        this.backends = backends;
+        this.syncContext = args.getSynchronizationContext();
+        // Lookups block, so they run off the synchronization context like the DNS resolver's
+        this.offloadExecutor = args.getOffloadExecutor() != null ? args.getOffloadExecutor()
+                : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @return Channel target that resolves through this resolver. The
+     *         backends are part of the target, so channels of different
+     *         sweep points do not share them.
+     */
+    static synchronized String target(BenchmarkParameters parameters) {
+        if (!registered) {
+            NameResolverRegistry.getDefaultRegistry().register(new Provider());
+            registered = true;
+        }
+        try {
+            return new URI(SCHEME, "", "/" + parameters.rrAddresses, null, null).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Bad --rr_addresses: " + parameters.rrAddresses, e);
+        }
+    }
+
+    @Override
+    public String getServiceAuthority() {
+        return ChannelFactory.HOST;
+    }
+
+    @Override
+    public void start(Listener2 listener) {
+        this.listener = listener;
+        resolve();
+    }
+
+    @Override
+    public void refresh() {
+        resolve();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    private void resolve() {
+        if (resolving || shutdown) {
+            return;
+        }
+        resolving = true;
+        offloadExecutor.execute(() -> {
+            try {
+                List<EquivalentAddressGroup> groups = new ArrayList<>();
+                for (SocketAddress backend : backendAddresses()) {
+                    groups.add(new EquivalentAddressGroup(backend));
+                }
+                listener.onResult(ResolutionResult.newBuilder().setAddresses(groups).build());
+            } catch (UnknownHostException | IllegalArgumentException e) {
+                listener.onError(Status.UNAVAILABLE.withDescription("Failed to resolve backends").withCause(e));
+            } finally {
+                syncContext.execute(() -> resolving = false);
+            }
+        });
+    }
+
+    private List<SocketAddress> backendAddresses() throws UnknownHostException {
+        List<SocketAddress> addresses = new ArrayList<>();
+        if (!backends.isEmpty()) {
+            for (InetSocketAddress address : parseAddresses(backends)) {
+                addresses.add(new InetSocketAddress(address.getHostString(), address.getPort()));
+            }
+            return addresses;
+        }
+        for (InetAddress address : InetAddress.getAllByName(ChannelFactory.HOST)) {
+            addresses.add(new InetSocketAddress(address, ChannelFactory.PORT));
+        }
+        return addresses;
+    }
+
+    /**
+     * @return The --rr_addresses backends, not yet resolved
+     */
+    static List<InetSocketAddress> configuredAddresses(BenchmarkParameters parameters) {
+        return parseAddresses(parameters.rrAddresses);
+    }
+
+    private static List<InetSocketAddress> parseAddresses(String backends) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String address : backends.split(",")) {
+            String trimmed = address.trim();
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("--rr_addresses entries must be host:port: " + trimmed);
+            }
+            String host = trimmed.substring(0, colon).replace("[", "").replace("]", "");
+            addresses.add(InetSocketAddress.createUnresolved(host, Integer.parseInt(trimmed.substring(colon + 1))));
+        }
+        return addresses;
+    }
+
+    private static class Provider extends NameResolverProvider {
+        @Override
+        public NameResolver newNameResolver(URI targetUri, Args args) {
+            if (!SCHEME.equals(targetUri.getScheme())) {
+                return null;
+            }
+            return new MultiAddressNameResolver(targetUri.getPath().substring(1), args);
+        }
+
+        @Override
+        public String getDefaultScheme() {
+            return SCHEME;
+        }
+
+        @Override
+        protected boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        protected int priority() {
+            // Below dns so other targets keep their default scheme
+            return 4;
+        }
+    }
+}
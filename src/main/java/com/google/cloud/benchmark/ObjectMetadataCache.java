@@ -0,0 +1,167 @@
+package com.google.cloud.benchmark;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of object size and generation shared by all worker threads.
+ * Lets read operations skip the per-operation metadata round trip. Entries are
+ * evicted least-recently-used once the cache is full and expire after the
+ * configured TTL.
+ */
+public class ObjectMetadataCache {
+
+    /**
+     * Cached metadata for a single object.
+     */
+    public static class ObjectMetadata {
+        /** Marker for objects that did not exist when looked up. */
+        public static final ObjectMetadata MISSING = new ObjectMetadata(-1, 0);
+
+        public final long size;
+        public final long generation;
+
+        public ObjectMetadata(long size, long generation) {
+            this.size = size;
+            this.generation = generation;
+        }
+
+        public boolean exists() {
+            return this != MISSING;
+        }
+    }
+
+    /**
+     * Fetches metadata for an object from the server.
+     */
+    public interface Loader {
+        /**
+         * @param objectName Object to look up
+         * @return Metadata of the object, or {@link ObjectMetadata#MISSING}
+         */
+        ObjectMetadata load(String objectName) throws Exception;
+    }
+
+    private final Cache<String, ObjectMetadata> cache;
+    private final Loader loader;
+    private final StatWatcher metadataWatcher = new StatWatcher();
+    private final AtomicLong prefilled = new AtomicLong();
+
+    public ObjectMetadataCache(Loader loader, long maxSize, long ttlMs) {
+        this.loader = loader;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats();
+        if (ttlMs > 0) {
+            builder.expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * Create the cache if --metadata_cache is set.
+     *
+     * @return The cache, or null if disabled
+     */
+    public static ObjectMetadataCache fromParameters(BenchmarkParameters parameters, Loader loader) {
+        if (!parameters.metadataCache) {
+            return null;
+        }
+        return new ObjectMetadataCache(loader, parameters.metadataCacheSize, parameters.metadataCacheTtlMs);
+    }
+
+    /**
+     * Get metadata for an object, loading it on a miss. Concurrent misses for
+     * the same object result in a single load.
+     */
+    public ObjectMetadata get(String objectName) {
+        try {
+            return cache.get(objectName, () -> timedLoad(objectName));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Load metadata for every object in the --object_format key range so that
+     * the timed phase only sees cache hits. The runners call this before the
+     * timed phase, and the bulk loads are neither counted as misses nor part
+     * of the lookup latency.
+     */
+    public void prefill(BenchmarkParameters parameters) {
+        List<String> names = ObjectResolver.allNames(parameters);
+
+        System.out.println("Pre-populating metadata cache for " + names.size() + " objects...");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parameters.threads));
+        for (String name : names) {
+            executor.submit(() -> {
+                try {
+                    cache.put(name, loader.load(name));
+                    prefilled.incrementAndGet();
+                } catch (Exception e) {
+                    if (parameters.verbose) {
+                        System.err.println("Failed to load metadata for " + name + ": " + e.getMessage());
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return Watcher holding the latency of every metadata fetch made by the cache
+     */
+    public StatWatcher getMetadataWatcher() {
+        return metadataWatcher;
+    }
+
+    /**
+     * @return Objects loaded by {@link #prefill}
+     */
+    public long getPrefillCount() {
+        return prefilled.get();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    private ObjectMetadata timedLoad(String objectName) throws Exception {
+        long start = System.nanoTime();
+        boolean success = false;
+        String errorCode = "";
+        try {
+            ObjectMetadata metadata = loader.load(objectName);
+            success = true;
+            return metadata;
+        } catch (Exception e) {
+            errorCode = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            metadataWatcher.notifyCompleted("metadata", 0, 0, "", objectName,
+                    (end - start) / 1_000_000.0, 0, success, errorCode, "", new ArrayList<>());
+        }
+    }
+}
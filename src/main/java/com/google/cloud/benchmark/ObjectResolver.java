@@ -1,6 +1,99 @@
 package com.google.cloud.benchmark;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the object used by each operation from --object_format and the
+ * --object_start/--object_stop range. Names are built once up front so the
+ * per-operation lookup is a table read.
+ */
 public class ObjectResolver {
+    /** Upper bound on precompiled names; larger ranges are resolved per operation. */
+    private static final long MAX_TABLE_SIZE = 16L * 1024 * 1024;
+
+    private final BenchmarkParameters parameters;
+    private final boolean formatted;
+    private final boolean perThread;
+    private final int keyCount;
+    private final KeyDistribution keys;
+    private final String[][] names;
+
+    public ObjectResolver(BenchmarkParameters parameters) {
+        this.parameters = parameters;
+        this.formatted = parameters.objectFormat != null && !parameters.objectFormat.isEmpty();
+        this.perThread = formatted && parameters.objectFormat.contains("{t}");
+        this.keyCount = Math.max(1, parameters.objectStop - parameters.objectStart);
+        this.keys = KeyDistributions.fromParameters(parameters, keyCount);
+
+        int rows = perThread ? Math.max(1, parameters.threads) : 1;
+        if (!formatted) {
+            this.names = null;
+        } else if ((long) rows * keyCount > MAX_TABLE_SIZE) {
+            System.err.println("WARN: " + ((long) rows * keyCount)
+                    + " object names are too many to precompile, resolving per operation");
+            this.names = null;
+        } else {
+            this.names = new String[rows][keyCount];
+            for (int t = 0; t < rows; t++) {
+                for (int k = 0; k < keyCount; k++) {
+                    names[t][k] = resolveName(parameters.objectFormat, parameters.object, t,
+                            parameters.objectStart + k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick the object for the next operation of a thread.
+     */
+    public String next(int threadId) {
+        if (!formatted) {
+            return parameters.object;
+        }
+        int key = keys.next(threadId);
+        if (names != null) {
+            return names[perThread ? threadId % names.length : 0][key];
+        }
+        return resolveName(parameters.objectFormat, parameters.object, threadId, parameters.objectStart + key);
+    }
+
+    /**
+     * @return Every object name the parameters can resolve to, e.g. to
+     *         provision or pre-load the whole key range
+     */
+    public static List<String> allNames(BenchmarkParameters parameters) {
+        List<String> names = new ArrayList<>();
+        if (parameters.objectFormat == null || parameters.objectFormat.isEmpty()) {
+            names.add(parameters.object);
+            return names;
+        }
+        int threadIds = parameters.objectFormat.contains("{t}") ? Math.max(1, parameters.threads) : 1;
+        int stop = Math.max(parameters.objectStop, parameters.objectStart + 1);
+        for (int t = 0; t < threadIds; t++) {
+            for (int o = parameters.objectStart; o < stop; o++) {
+                names.add(resolveName(parameters.objectFormat, parameters.object, t, o));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Prefix listed by list operations: the first {@code depth} path
+     * components of the object name, or the whole bucket for depth 0.
+     */
+    public static String listPrefix(String objectName, int depth) {
+        int end = 0;
+        for (int i = 0; i < depth; i++) {
+            int slash = objectName.indexOf('/', end);
+            if (slash < 0) {
+                break;
+            }
+            end = slash + 1;
+        }
+        return objectName.substring(0, end);
+    }
+
     public static String resolveName(String format, String objectName, int threadId, int objectId) {
         if (format == null || format.isEmpty()) {
             return objectName;
@@ -0,0 +1,42 @@
+package com.google.cloud.benchmark;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate arrivals for --rate. Operations are released on schedule
+ * whether or not earlier ones have finished, so when the workers fall behind
+ * the operations queue up, and the runners count the latency of each one
+ * from when it was due. A closed loop instead waits for a worker before it
+ * issues the next operation and never shows that queueing.
+ */
+public class OpenLoopSchedule {
+
+    /**
+     * Issues one operation.
+     */
+    public interface Dispatch {
+        /**
+         * @param index    Position of the operation in the schedule
+         * @param dueNanos {@link System#nanoTime()} at which it was due
+         */
+        void dispatch(int index, long dueNanos);
+    }
+
+    /**
+     * Call the dispatch for each of the operations at its due time. Returns
+     * once the last one was dispatched.
+     *
+     * @param rate Operations per second
+     */
+    public static void run(int count, double rate, Dispatch dispatch) {
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long dueNanos = startNanos + (long) (i * 1e9 / rate);
+            long waitNanos;
+            while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            dispatch.dispatch(i, dueNanos);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.google.cloud.benchmark;
+
+/**
+ * A benchmark operation with its per-operation parameters. Built once from
+ * the command line, or picked from a workload profile for every run.
+ */
+public class Operation {
+    public final String type;
+    public final long writeSize;
+    public final long chunkSize;
+    public final long readOffset;
+    public final long readLimit;
+    /**
+     * Offset a random read replayed from an access trace reads at, or -1 to
+     * pick one at random. Random reads ignore readOffset.
+     */
+    public final long replayOffset;
+
+    public Operation(String type, long writeSize, long chunkSize, long readOffset, long readLimit) {
+        this(type, writeSize, chunkSize, readOffset, readLimit, -1);
+    }
+
+    Operation(String type, long writeSize, long chunkSize, long readOffset, long readLimit, long replayOffset) {
+        this.type = type;
+        this.writeSize = writeSize;
+        this.chunkSize = chunkSize;
+        this.readOffset = readOffset;
+        this.readLimit = readLimit;
+        this.replayOffset = replayOffset;
+    }
+
+    /**
+     * Build the single operation described by --operation and its flags.
+     */
+    public static Operation fromParameters(BenchmarkParameters parameters) {
+        return new Operation(parameters.operation.toLowerCase(), parameters.writeSize, parameters.chunkSize,
+                parameters.readOffset, parameters.readLimit);
+    }
+
+    public boolean isWrite() {
+        return "write".equals(type);
+    }
+
+    public boolean isRandomRead() {
+        return "random-read".equals(type);
+    }
+
+    /**
+     * @return Whether this is a metadata-path operation (stat, list, delete,
+     *         update) that transfers no object data
+     */
+    public boolean isMetadata() {
+        return "stat".equals(type) || "list".equals(type) || "delete".equals(type) || "update".equals(type);
+    }
+
+    public boolean isProvision() {
+        return "provision".equals(type);
+    }
+}
@@ -0,0 +1,177 @@
+package com.google.cloud.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import picocli.CommandLine;
+import picocli.CommandLine.Model.OptionSpec;
+
+/**
+ * Matrix of option values for --sweep, run one point after another in the
+ * same JVM. The spec names options without their dashes, e.g.
+ * "threads=1,8,32;cpolicy=perthread,pool", and every combination is one
+ * point, with the last option varying fastest. Each point is parsed from the
+ * original command line with the swept options replaced, so it starts from
+ * the same defaults as a separate run would.
+ */
+public class ParameterSweep {
+    private final List<String> names = new ArrayList<>();
+    private final List<List<String>> values = new ArrayList<>();
+
+    private ParameterSweep() {
+    }
+
+    /**
+     * Parse a --sweep spec.
+     *
+     * @param cmd Command line of the run, used to check the option names
+     */
+    public static ParameterSweep parse(String spec, CommandLine cmd) {
+        ParameterSweep sweep = new ParameterSweep();
+        for (String dimension : spec.split(";")) {
+            if (dimension.trim().isEmpty()) {
+                continue;
+            }
+            int eq = dimension.indexOf('=');
+            if (eq <= 0 || eq == dimension.length() - 1) {
+                throw new IllegalArgumentException("Sweep dimension must be option=value,...: " + dimension);
+            }
+            String name = dimension.substring(0, eq).trim();
+            if (name.startsWith("--")) {
+                name = name.substring(2);
+            }
+            OptionSpec option = cmd.getCommandSpec().findOption("--" + name);
+            if (option == null || option.usageHelp() || "sweep".equals(name)) {
+                throw new IllegalArgumentException("Cannot sweep --" + name);
+            }
+            if (sweep.names.contains(name)) {
+                throw new IllegalArgumentException("Sweep lists --" + name + " twice");
+            }
+            List<String> optionValues = new ArrayList<>();
+            for (String value : dimension.substring(eq + 1).split(",")) {
+                optionValues.add(value.trim());
+            }
+            sweep.names.add(name);
+            sweep.values.add(optionValues);
+        }
+        if (sweep.names.isEmpty()) {
+            throw new IllegalArgumentException("Sweep needs at least one option: " + spec);
+        }
+        return sweep;
+    }
+
+    /**
+     * @return Swept option names, without dashes, in spec order
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * @return Every combination of the values, as option name to value
+     */
+    public List<Map<String, String>> points() {
+        List<Map<String, String>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<>());
+        for (int i = 0; i < names.size(); i++) {
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> point : points) {
+                for (String value : values.get(i)) {
+                    Map<String, String> extended = new LinkedHashMap<>(point);
+                    extended.put(names.get(i), value);
+                    next.add(extended);
+                }
+            }
+            points = next;
+        }
+        return points;
+    }
+
+    /**
+     * Parse the parameters of one point: the original arguments with the
+     * swept options (and --sweep itself) taken out and the point's values
+     * added.
+     *
+     * @throws CommandLine.ParameterException if a value does not parse
+     */
+    public static BenchmarkParameters apply(String[] args, Map<String, String> point) {
+        BenchmarkParameters parameters = new BenchmarkParameters();
+        new CommandLine(parameters).parseArgs(
+                arguments(args, point, Collections.singletonList("sweep")).toArray(new String[0]));
+        return parameters;
+    }
+
+    /**
+     * @param dropped Further options, without dashes, to take out
+     * @return The original arguments with the options of the point and the
+     *         dropped ones replaced by the values of the point
+     */
+    public static List<String> arguments(String[] args, Map<String, String> point, Collection<String> dropped) {
+        CommandLine cmd = new CommandLine(new BenchmarkParameters());
+        List<String> pointArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            OptionSpec option = optionOf(cmd, args[i]);
+            if (option == null) {
+                pointArgs.add(args[i]);
+                continue;
+            }
+            String name = option.longestName().substring(2);
+            if (dropped.contains(name) || point.containsKey(name)) {
+                // Skip the separate value of "--name value"
+                if (!args[i].contains("=") && option.arity().max() > 0 && i + 1 < args.length) {
+                    i++;
+                }
+            } else {
+                pointArgs.add(args[i]);
+            }
+        }
+        for (Map.Entry<String, String> entry : point.entrySet()) {
+            OptionSpec option = cmd.getCommandSpec().findOption("--" + entry.getKey());
+            if (option.type() == boolean.class || option.type() == Boolean.class) {
+                boolean enabled = Boolean.parseBoolean(entry.getValue());
+                if (!enabled && !"false".equalsIgnoreCase(entry.getValue())) {
+                    throw new CommandLine.ParameterException(cmd,
+                            "Sweep value of --" + entry.getKey() + " must be true or false: " + entry.getValue());
+                }
+                if (enabled) {
+                    pointArgs.add("--" + entry.getKey());
+                } else if (option.negatable()) {
+                    pointArgs.add("--no-" + entry.getKey());
+                }
+            } else {
+                pointArgs.add("--" + entry.getKey() + "=" + entry.getValue());
+            }
+        }
+        return pointArgs;
+    }
+
+    /**
+     * @return The point as "name=value" pairs separated by semicolons
+     */
+    public static String describe(Map<String, String> point) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : point.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static OptionSpec optionOf(CommandLine cmd, String arg) {
+        if (!arg.startsWith("--")) {
+            return null;
+        }
+        int eq = arg.indexOf('=');
+        String name = eq > 0 ? arg.substring(0, eq) : arg;
+        OptionSpec option = cmd.getCommandSpec().findOption(name);
+        if (option == null && name.startsWith("--no-")) {
+            option = cmd.getCommandSpec().findOption("--" + name.substring(5));
+        }
+        return option;
+    }
+}
@@ -1,10 +1,8 @@
 package com.google.cloud.benchmark;
 
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.storage.v2.StorageGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
-import io.grpc.auth.MoreCallCredentials;
 import java.io.IOException;
 import java.util.function.Supplier;
 
@@ -26,15 +24,13 @@ public class PerCallChannelPool implements StorageStubProvider {
     @Override
     public StubHolder getStub() {
         ManagedChannel channel = channelCreator.get();
-        StorageGrpc.StorageBlockingStub blockingStub = StorageGrpc.newBlockingStub(channel);
-        StorageGrpc.StorageStub asyncStub = StorageGrpc.newStub(channel);
-
-        if (cachedCredentials != null) {
-            blockingStub = blockingStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
-            asyncStub = asyncStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
-        }
+        return StorageStubProvider.createStubHolder(channel, cachedCredentials, parameters);
+    }
 
-        return new StubHolder(blockingStub, asyncStub, channel);
+    @Override
+    public StubHolder getStub(ManagedChannel exclude) {
+        // Every call already gets a fresh channel
+        return getStub();
     }
 
     @Override
@@ -1,15 +1,17 @@
 package com.google.cloud.benchmark;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.storage.v2.StorageGrpc;
 
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
-import io.grpc.auth.MoreCallCredentials;
 
 /**
  * Channel pool that creates one channel per thread using ThreadLocal.
@@ -19,12 +21,18 @@ public class PerThreadChannelPool implements StorageStubProvider {
     private final GoogleCredentials cachedCredentials;
     private final ThreadLocal<ManagedChannel> threadChannel;
     private final ConcurrentHashMap<Long, ManagedChannel> channels = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<ManagedChannel> spareChannels = new ConcurrentLinkedQueue<>();
+    private final Supplier<ManagedChannel> channelCreator;
 
     public PerThreadChannelPool(Supplier<ManagedChannel> channelCreator, BenchmarkParameters parameters) {
         this.parameters = parameters;
+        this.channelCreator = channelCreator;
         this.cachedCredentials = loadCredentials();
         this.threadChannel = ThreadLocal.withInitial(() -> {
-            ManagedChannel channel = channelCreator.get();
+            ManagedChannel channel = spareChannels.poll();
+            if (channel == null) {
+                channel = channelCreator.get();
+            }
             channels.put(Thread.currentThread().getId(), channel);
             return channel;
         });
@@ -33,15 +41,22 @@ public class PerThreadChannelPool implements StorageStubProvider {
     @Override
     public StubHolder getStub() {
         ManagedChannel channel = threadChannel.get();
-        StorageGrpc.StorageBlockingStub blockingStub = StorageGrpc.newBlockingStub(channel);
-        StorageGrpc.StorageStub asyncStub = StorageGrpc.newStub(channel);
+        return StorageStubProvider.createStubHolder(channel, cachedCredentials, parameters);
+    }
 
-        if (cachedCredentials != null) {
-            blockingStub = blockingStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
-            asyncStub = asyncStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
+    @Override
+    public StubHolder getStub(ManagedChannel exclude) {
+        // Borrow another thread's channel if one exists. Start at a random one
+        // so that the hedges of all threads spread over the channels.
+        List<ManagedChannel> candidates = new ArrayList<>(channels.values());
+        int start = candidates.isEmpty() ? 0 : ThreadLocalRandom.current().nextInt(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            ManagedChannel channel = candidates.get((start + i) % candidates.size());
+            if (channel != exclude) {
+                return StorageStubProvider.createStubHolder(channel, cachedCredentials, parameters);
+            }
         }
-
-        return new StubHolder(blockingStub, asyncStub, channel);
+        return getStub();
     }
 
     @Override
@@ -50,6 +65,21 @@ public class PerThreadChannelPool implements StorageStubProvider {
         // Each thread manages its own channel
     }
 
+    /**
+     * Called between phases, when the threads of the previous phase are
+     * gone: their channels become spares that the next threads pick up, and
+     * new channels are created so that every thread finds a connected one.
+     */
+    @Override
+    public void preconnect(int threads, long timeoutMs) {
+        spareChannels.addAll(channels.values());
+        channels.clear();
+        while (spareChannels.size() < threads) {
+            spareChannels.add(channelCreator.get());
+        }
+        ChannelFactory.connect(new ArrayList<>(spareChannels), timeoutMs);
+    }
+
     @Override
     public void shutdown() {
         for (ManagedChannel channel : channels.values()) {
@@ -58,6 +88,10 @@ public class PerThreadChannelPool implements StorageStubProvider {
             }
         }
         channels.clear();
+        for (ManagedChannel channel : spareChannels) {
+            channel.shutdown();
+        }
+        spareChannels.clear();
     }
 
     private GoogleCredentials loadCredentials() {
@@ -3,9 +3,40 @@ package com.google.cloud.benchmark;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class RandomData {
+    private static final int BLOCK_SIZE = 4096;
+    private static final byte[] PATTERN = "gcs-bench-".getBytes();
+
     public static byte[] generate(int size) {
         byte[] data = new byte[size];
         ThreadLocalRandom.current().nextBytes(data);
         return data;
     }
+
+    /**
+     * Generate data that compresses by roughly the given ratio. Each 4 KiB
+     * block starts with random bytes and is padded with a repeating pattern,
+     * so compressed size is close to the random share of the block.
+     *
+     * @param size             Number of bytes
+     * @param compressionRatio Target logical-to-compressed ratio (1.0 = incompressible)
+     */
+    public static byte[] generate(int size, double compressionRatio) {
+        if (compressionRatio <= 1.0) {
+            return generate(size);
+        }
+        byte[] data = new byte[size];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int randomPerBlock = (int) Math.ceil(BLOCK_SIZE / compressionRatio);
+        byte[] randomBytes = new byte[randomPerBlock];
+        for (int blockStart = 0; blockStart < size; blockStart += BLOCK_SIZE) {
+            int blockEnd = Math.min(size, blockStart + BLOCK_SIZE);
+            int randomEnd = Math.min(blockEnd, blockStart + randomPerBlock);
+            random.nextBytes(randomBytes);
+            System.arraycopy(randomBytes, 0, data, blockStart, randomEnd - blockStart);
+            for (int i = randomEnd; i < blockEnd; i++) {
+                data[i] = PATTERN[(i - randomEnd) % PATTERN.length];
+            }
+        }
+        return data;
+    }
 }
@@ -0,0 +1,24 @@
+package com.google.cloud.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination for the bytes received by read operations. A sink is used by
+ * one operation at a time, so implementations need not be thread-safe.
+ */
+public interface ReadSink extends Closeable {
+
+    /**
+     * Called at the start of each read operation.
+     */
+    void reset() throws IOException;
+
+    /**
+     * Consume the remaining bytes of the buffer.
+     *
+     * @param data Buffer positioned at the bytes to consume
+     */
+    void write(ByteBuffer data) throws IOException;
+}
@@ -0,0 +1,236 @@
+package com.google.cloud.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of read sinks selected by --sink. One sink per worker thread is
+ * allocated up front so buffers, files and mappings are reused by every
+ * operation instead of being allocated inside the timed region.
+ */
+public class ReadSinks {
+    private static final int PAGE_SIZE = 4096;
+
+    private final String mode;
+    private final Path directory;
+    private final int bufferSize;
+    private final ConcurrentLinkedQueue<ReadSink> free = new ConcurrentLinkedQueue<>();
+    private final List<ReadSink> all = new ArrayList<>();
+    private final AtomicInteger nextId = new AtomicInteger(0);
+
+    public ReadSinks(BenchmarkParameters parameters) {
+        this.mode = parameters.sink.toLowerCase();
+        this.directory = Paths.get(parameters.sinkPath.isEmpty()
+                ? System.getProperty("java.io.tmpdir")
+                : parameters.sinkPath);
+        this.bufferSize = parameters.sinkBufferSize;
+
+        for (int i = 0; i < Math.max(1, parameters.threads); i++) {
+            free.add(create());
+        }
+    }
+
+    /**
+     * Take a sink from the pool and reset it for a new operation.
+     */
+    public ReadSink acquire() throws IOException {
+        ReadSink sink = free.poll();
+        if (sink == null) {
+            sink = create();
+        }
+        sink.reset();
+        return sink;
+    }
+
+    /**
+     * Return a sink to the pool.
+     */
+    public void release(ReadSink sink) {
+        free.offer(sink);
+    }
+
+    /**
+     * Close all sinks and remove any files they created.
+     */
+    public void close() {
+        synchronized (all) {
+            for (ReadSink sink : all) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close sink: " + e.getMessage());
+                }
+            }
+            all.clear();
+        }
+    }
+
+    private ReadSink create() {
+        ReadSink sink;
+        try {
+            switch (mode) {
+                case "discard":
+                    sink = new DiscardSink();
+                    break;
+                case "copy":
+                    sink = new CopySink(bufferSize);
+                    break;
+                case "file":
+                    sink = new FileSink(directory.resolve("gcs-bench-sink-" + nextId.getAndIncrement() + ".dat"));
+                    break;
+                case "mmap":
+                    sink = new MmapSink(directory.resolve("gcs-bench-mmap-" + nextId.getAndIncrement() + ".dat"),
+                            bufferSize);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown sink: " + mode);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create " + mode + " sink", e);
+        }
+        synchronized (all) {
+            all.add(sink);
+        }
+        return sink;
+    }
+
+    /**
+     * Drops the received bytes.
+     */
+    static class DiscardSink implements ReadSink {
+        @Override
+        public void reset() {
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            data.position(data.limit());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Copies the received bytes into a reusable heap buffer, wrapping around
+     * when the buffer is full.
+     */
+    static class CopySink implements ReadSink {
+        private final ByteBuffer buffer;
+
+        CopySink(int size) {
+            this.buffer = ByteBuffer.allocate(size);
+        }
+
+        @Override
+        public void reset() {
+            buffer.clear();
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            putWrapping(buffer, data);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Writes the received bytes to a local file through a FileChannel. The
+     * file is rewritten from the start by every operation.
+     */
+    static class FileSink implements ReadSink {
+        private final Path path;
+        private final FileChannel channel;
+
+        FileSink(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override
+        public void reset() throws IOException {
+            channel.position(0);
+        }
+
+        @Override
+        public void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Copies the received bytes into a preallocated memory-mapped file
+     * region, wrapping around when the region is full. Pages are touched at
+     * creation so page faults stay out of the timed phase.
+     */
+    static class MmapSink implements ReadSink {
+        private final Path path;
+        private final MappedByteBuffer region;
+
+        MmapSink(Path path, int size) throws IOException {
+            this.path = path;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            for (int i = 0; i < size; i += PAGE_SIZE) {
+                region.put(i, (byte) 0);
+            }
+        }
+
+        @Override
+        public void reset() {
+            region.clear();
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            putWrapping(region, data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void putWrapping(ByteBuffer target, ByteBuffer data) {
+        if (target.remaining() >= data.remaining()) {
+            target.put(data);
+            return;
+        }
+        while (data.hasRemaining()) {
+            if (!target.hasRemaining()) {
+                target.clear();
+            }
+            int length = Math.min(target.remaining(), data.remaining());
+            ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + length);
+            target.put(slice);
+            data.position(data.position() + length);
+        }
+    }
+}
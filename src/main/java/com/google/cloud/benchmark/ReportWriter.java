@@ -1,72 +1,200 @@
 package com.google.cloud.benchmark;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Utility for writing benchmark results to files.
  */
 public class ReportWriter {
 
+    private static final String OPERATION_COLUMNS = "tag,operation,client,cpolicy,threads,runs,total_bytes,"
+            + "duration_ms,throughput_mbps,p50_ms,p95_ms,p99_ms,success_rate";
+
+    private static final String RUN_COLUMNS = "hedges_sent,hedges_won,hedge_extra_bytes,"
+            + "wire_bytes_sent,wire_bytes_received,uncompressed_bytes_sent,uncompressed_bytes_received,"
+            + "cpu_sec_per_gib,cpu_sec,voluntary_ctx_switches,involuntary_ctx_switches,peak_threads,"
+            + "alloc_bytes_per_op,gc_pauses,gc_pause_ms,gc_max_pause_ms,peak_heap_mb,peak_direct_mb,"
+            + "peak_netty_pooled_mb,cpu_user_sec,cpu_sys_sec,cpu_ns_per_byte,cpu_ns_per_op,worker_cpu_sec,"
+            + "io_cpu_sec,gc_cpu_sec,jvm_cpu_sec,other_cpu_sec,warmup_ops,warmup_sec,drift_pct,channel_args,"
+            + "sweep_point";
+
     /**
-     * Write a summary report line to a file (appending).
+     * Write a summary report line to a file (appending). Runs that mix
+     * operation types also get one line per type, with the run-level columns
+     * left empty.
      * Format:
-     * tag,operation,threads,runs,total_bytes,duration_ms,throughput_mbps,p50_ms,p95_ms,p99_ms,success_rate
+     * tag,operation,client,cpolicy,threads,runs,total_bytes,duration_ms,throughput_mbps,p50_ms,p95_ms,p99_ms,
+     * success_rate,hedges_sent,hedges_won,hedge_extra_bytes,wire_bytes_sent,wire_bytes_received,
+     * uncompressed_bytes_sent,uncompressed_bytes_received,cpu_sec_per_gib,cpu_sec,
+     * voluntary_ctx_switches,involuntary_ctx_switches,peak_threads,alloc_bytes_per_op,gc_pauses,
+     * gc_pause_ms,gc_max_pause_ms,peak_heap_mb,peak_direct_mb,peak_netty_pooled_mb,cpu_user_sec,
+     * cpu_sys_sec,cpu_ns_per_byte,cpu_ns_per_op,worker_cpu_sec,io_cpu_sec,gc_cpu_sec,jvm_cpu_sec,
+     * other_cpu_sec,warmup_ops,warmup_sec,drift_pct,channel_args,sweep_point
      * 
      * @param watcher    The StatWatcher containing results
      * @param params     Benchmark parameters
      * @param file       Output file path
      * @param tag        User-defined tag for this run
      * @param durationMs Total duration in milliseconds
+     * @return Whether the line was written
      */
-    public static void writeReport(StatWatcher watcher, BenchmarkParameters params,
+    public static boolean writeReport(StatWatcher watcher, BenchmarkParameters params,
             String file, String tag, long durationMs) {
+        return writeReport(watcher, params, file, tag, durationMs, Collections.emptyMap());
+    }
+
+    /**
+     * Write a summary report line for one point of a --sweep. The point goes
+     * in the last column (e.g. threads=8;cpolicy=pool), so every other column
+     * stays where it is in reports of normal runs.
+     *
+     * @param sweepPoint Swept option names and the values of this point
+     * @return Whether the line was written
+     */
+    public static boolean writeReport(StatWatcher watcher, BenchmarkParameters params,
+            String file, String tag, long durationMs, Map<String, String> sweepPoint) {
         if (file == null || file.isEmpty()) {
-            return;
+            return false;
+        }
+        String sweepColumn = "," + ParameterSweep.describe(sweepPoint);
+        String header = OPERATION_COLUMNS + "," + RUN_COLUMNS;
+        if (!canAppend(file, header)) {
+            return false;
         }
 
         try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
-            List<Double> latencies = watcher.getLatencies();
-            long totalBytes = watcher.getTotalBytes();
             List<StatWatcher.OperationRecord> ops = watcher.getOperations();
 
-            // Calculate statistics
-            double throughputMbps = totalBytes / 1024.0 / 1024.0 / (durationMs / 1000.0);
-            double p50 = calculatePercentile(latencies, 50);
-            double p95 = calculatePercentile(latencies, 95);
-            double p99 = calculatePercentile(latencies, 99);
-            double successRate = ops.isEmpty() ? 0.0
-                    : (double) ops.stream().filter(op -> op.success).count() / ops.size() * 100.0;
-
             // Write header if file doesn't exist or is empty
             java.io.File f = new java.io.File(file);
             if (f.length() == 0) {
-                writer.println("tag,operation,client,cpolicy,threads,runs,total_bytes,duration_ms," +
-                        "throughput_mbps,p50_ms,p95_ms,p99_ms,success_rate");
+                writer.println(header);
             }
 
             // Write data line
-            writer.printf("%s,%s,%s,%s,%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f%n",
-                    tag.isEmpty() ? "default" : tag,
-                    params.operation,
-                    params.client,
-                    params.cpolicy == null || params.cpolicy.isEmpty() ? "auto" : params.cpolicy,
-                    params.threads,
-                    params.runs,
-                    totalBytes,
-                    durationMs,
-                    throughputMbps,
-                    p50, p95, p99,
-                    successRate);
+            String operation = summaryOperation(params);
+            writer.println(formatOperationColumns(tag, operation, params, watcher.getLatencies(),
+                    watcher.getTotalBytes(), ops, durationMs) + "," + formatRunColumns(watcher, params) + sweepColumn);
+
+            if (watcher.getOperationTypes().size() > 1) {
+                // Every run column but sweep_point is left empty
+                String blankRunColumns = ",".repeat(RUN_COLUMNS.split(",").length - 1);
+                for (String type : watcher.getOperationTypes()) {
+                    List<StatWatcher.OperationRecord> typeOps = new ArrayList<>();
+                    List<Double> typeLatencies = new ArrayList<>();
+                    long typeBytes = 0;
+                    for (StatWatcher.OperationRecord op : ops) {
+                        if (op.operation.equals(type)) {
+                            typeOps.add(op);
+                            if (op.success) {
+                                typeLatencies.add(op.latencyMs);
+                                typeBytes += op.bytes;
+                            }
+                        }
+                    }
+                    writer.println(formatOperationColumns(tag, type, params, typeLatencies,
+                            typeBytes, typeOps, durationMs) + blankRunColumns + sweepColumn);
+                }
+            }
 
         } catch (IOException e) {
             System.err.println("Failed to write report to " + file + ": " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    private static String summaryOperation(BenchmarkParameters params) {
+        if (params.ctest > 0) {
+            return "ctest";
+        }
+        if (!params.traceReplay.isEmpty()) {
+            return "trace";
+        }
+        if (!params.workload.isEmpty() || params.mtest > 0) {
+            return "workload";
         }
+        return params.operation;
+    }
+
+    private static String formatOperationColumns(String tag, String operation, BenchmarkParameters params,
+            List<Double> latencies, long totalBytes, List<StatWatcher.OperationRecord> ops, long durationMs) {
+        // Calculate statistics
+        double throughputMbps = totalBytes / 1024.0 / 1024.0 / (durationMs / 1000.0);
+        double p50 = calculatePercentile(latencies, 50);
+        double p95 = calculatePercentile(latencies, 95);
+        double p99 = calculatePercentile(latencies, 99);
+        double successRate = ops.isEmpty() ? 0.0
+                : (double) ops.stream().filter(op -> op.success).count() / ops.size() * 100.0;
+
+        return String.format("%s,%s,%s,%s,%d,%d,%d,%d,%.2f,%.2f,%.2f,%.2f,%.2f",
+                tag.isEmpty() ? "default" : tag,
+                operation,
+                params.client,
+                params.cpolicy == null || params.cpolicy.isEmpty() ? "auto" : params.cpolicy,
+                params.threads,
+                ops.size(),
+                totalBytes,
+                durationMs,
+                throughputMbps,
+                p50, p95, p99,
+                successRate);
+    }
+
+    private static String formatRunColumns(StatWatcher watcher, BenchmarkParameters params) {
+        // Settings are ';'-separated so they stay in one column
+        String channelArgs = "grpc".equalsIgnoreCase(params.client)
+                ? ChannelFactory.getSettings(params).describe()
+                : "";
+        MemoryStats.Summary memory = watcher.getMemory();
+        SchedulerStats.CpuSummary cpu = watcher.getCpuSummary();
+        SteadyStateDetector.Summary warmup = watcher.getWarmup();
+        int operations = watcher.getOperations().size();
+        return String.format("%d,%d,%d,%d,%d,%d,%d,%.4f,%.3f,%d,%d,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,"
+                + "%.3f,%.3f,%.4f,%.0f,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%.1f,%.1f,%s",
+                watcher.getHedgesSent(),
+                watcher.getHedgesWon(),
+                watcher.getHedgeExtraBytes(),
+                watcher.getWireBytesSent(),
+                watcher.getWireBytesReceived(),
+                watcher.getUncompressedBytesSent(),
+                watcher.getUncompressedBytesReceived(),
+                watcher.getCpuSecondsPerGib(),
+                watcher.getCpuTimeNanos() / 1e9,
+                watcher.getVoluntaryContextSwitches(),
+                watcher.getInvoluntaryContextSwitches(),
+                watcher.getPeakThreads(),
+                operations == 0 ? 0 : memory.allocatedBytes / operations,
+                memory.gcPauses,
+                memory.gcPauseMs,
+                memory.gcMaxPauseMs,
+                memory.peakHeapBytes / (1024.0 * 1024.0),
+                memory.peakDirectBytes / (1024.0 * 1024.0),
+                memory.peakNettyPooledBytes / (1024.0 * 1024.0),
+                cpu.userNanos / 1e9,
+                cpu.systemNanos / 1e9,
+                watcher.getCpuNanosPerByte(),
+                watcher.getCpuNanosPerOperation(),
+                cpu.groupNanos(SchedulerStats.Group.WORKER) / 1e9,
+                cpu.groupNanos(SchedulerStats.Group.IO) / 1e9,
+                cpu.groupNanos(SchedulerStats.Group.GC) / 1e9,
+                cpu.groupNanos(SchedulerStats.Group.JVM) / 1e9,
+                cpu.groupNanos(SchedulerStats.Group.OTHER) / 1e9,
+                warmup.operations,
+                warmup.durationMs / 1000.0,
+                SteadyStateDetector.drift(watcher.getOperations(), params.warmupWindowMs).driftPercent,
+                channelArgs);
     }
 
     /**
@@ -77,10 +205,15 @@ public class ReportWriter {
      * @param params  Benchmark parameters
      * @param file    Output file path
      * @param tag     User-defined tag for this run
+     * @return Whether the lines were written
      */
-    public static void writeData(StatWatcher watcher, BenchmarkParameters params, String file, String tag) {
+    public static boolean writeData(StatWatcher watcher, BenchmarkParameters params, String file, String tag) {
         if (file == null || file.isEmpty()) {
-            return;
+            return false;
+        }
+        String header = "tag,operation,timestamp_ms,latency_ms,bytes,success";
+        if (!canAppend(file, header)) {
+            return false;
         }
 
         try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(file, true)))) {
@@ -89,14 +222,14 @@ public class ReportWriter {
             // Write header if file doesn't exist or is empty
             java.io.File f = new java.io.File(file);
             if (f.length() == 0) {
-                writer.println("tag,operation,timestamp_ms,latency_ms,bytes,success");
+                writer.println(header);
             }
 
             // Write each operation
             for (StatWatcher.OperationRecord op : ops) {
-                writer.printf("%s,%s,%d,%d,%d,%s%n",
+                writer.printf("%s,%s,%d,%.3f,%d,%s%n",
                         tag.isEmpty() ? "default" : tag,
-                        params.operation,
+                        op.operation,
                         op.timestampMs,
                         op.latencyMs,
                         op.bytes,
@@ -105,10 +238,37 @@ public class ReportWriter {
 
         } catch (IOException e) {
             System.err.println("Failed to write data to " + file + ": " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rows are only appended under the header they were written for, since
+     * readers find columns by name in the first line.
+     *
+     * @return Whether the file is new, empty or starts with this header
+     */
+    private static boolean canAppend(String file, String header) {
+        Path path = Paths.get(file);
+        if (!Files.exists(path)) {
+            return true;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String existing = reader.readLine();
+            if (existing == null || existing.equals(header)) {
+                return true;
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read " + file + ": " + e.getMessage());
+            return false;
         }
+        System.err.println("WARN: " + file + " has different columns than this run writes; not appending. "
+                + "Use a new file.");
+        return false;
     }
 
-    private static double calculatePercentile(List<Double> values, int percentile) {
+    static double calculatePercentile(List<Double> values, int percentile) {
         if (values.isEmpty()) {
             return 0.0;
         }
@@ -0,0 +1,423 @@
+package com.google.cloud.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.math3.distribution.BetaDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.stat.inference.MannWhitneyUTest;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+
+/**
+ * The compare command: reads back two result sets, a baseline and a
+ * candidate, and decides whether the candidate regressed. A result set is
+ * either the lines of a --report_file, one sample per run, or the operations
+ * of a --data_file, one latency sample per operation and one throughput
+ * sample per second. Each can be narrowed to one --report_tag.
+ *
+ * <p>For throughput and the latency percentiles it prints the change with a
+ * bootstrap confidence interval and the Mann-Whitney p-value of the samples.
+ * The percentiles of a data file share one sample of all latencies, so their
+ * p-value is printed once, for the whole latency distribution.
+ * A change is a regression when the interval lies entirely on the worse side
+ * and the change is at least --threshold percent, so noise between runs and
+ * significant but negligible shifts both pass. The resampling is seeded, so
+ * the same files always give the same verdict.
+ */
+public class ResultComparison {
+    /** Exit code when the candidate regressed */
+    public static final int EXIT_REGRESSION = 2;
+
+    private static final int RESAMPLES = 2000;
+    private static final long DATA_WINDOW_MS = 1000;
+    private static final long SEED = 1;
+
+    /**
+     * Options of the compare command.
+     */
+    static class Options {
+        @Option(names = "--baseline", description = "Baseline results: a --report_file or --data_file, optionally followed by :TAG", required = true)
+        String baseline;
+
+        @Option(names = "--candidate", description = "Candidate results, in the same form as --baseline", required = true)
+        String candidate;
+
+        @Option(names = "--threshold", description = "Smallest change in percent that counts as a regression", defaultValue = "5")
+        double threshold;
+
+        @Option(names = "--confidence", description = "Confidence level of the intervals", defaultValue = "0.95")
+        double confidence;
+
+        @Option(names = "--help", usageHelp = true, description = "display this help message")
+        boolean help;
+    }
+
+    /**
+     * Point estimate of a metric and its bootstrap replicates.
+     */
+    private interface Estimator {
+        double estimate(double[] sorted);
+
+        double[] bootstrap(double[] sorted, RandomGenerator random);
+    }
+
+    private static final Estimator MEAN = new Estimator() {
+        @Override
+        public double estimate(double[] sorted) {
+            return Arrays.stream(sorted).average().orElse(0.0);
+        }
+
+        @Override
+        public double[] bootstrap(double[] sorted, RandomGenerator random) {
+            double[] replicates = new double[RESAMPLES];
+            for (int r = 0; r < RESAMPLES; r++) {
+                double sum = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    sum += sorted[random.nextInt(sorted.length)];
+                }
+                replicates[r] = sum / sorted.length;
+            }
+            return replicates;
+        }
+    };
+
+    /**
+     * Nearest-rank percentile, as in the report file.
+     */
+    private static Estimator percentile(int percentile) {
+        return new Estimator() {
+            private int rank(int n) {
+                return Math.max(1, Math.min(n, (int) Math.ceil(percentile / 100.0 * n)));
+            }
+
+            @Override
+            public double estimate(double[] sorted) {
+                return sorted[rank(sorted.length) - 1];
+            }
+
+            @Override
+            public double[] bootstrap(double[] sorted, RandomGenerator random) {
+                // The k-th smallest of n uniform draws is Beta(k, n + 1 - k)
+                // distributed, so a resample's percentile can be drawn
+                // directly instead of resampling and sorting every operation
+                int n = sorted.length;
+                int k = rank(n);
+                BetaDistribution orderStatistic = new BetaDistribution(random, k, n + 1 - k);
+                double[] replicates = new double[RESAMPLES];
+                for (int r = 0; r < RESAMPLES; r++) {
+                    replicates[r] = sorted[Math.min(n - 1, (int) (orderStatistic.sample() * n))];
+                }
+                return replicates;
+            }
+        };
+    }
+
+    /**
+     * One metric of a result set.
+     */
+    private static class Metric {
+        final String name;
+        final boolean lowerIsBetter;
+        final Estimator estimator;
+        final double[] samples;
+
+        Metric(String name, boolean lowerIsBetter, Estimator estimator, List<Double> samples) {
+            this.name = name;
+            this.lowerIsBetter = lowerIsBetter;
+            this.estimator = estimator;
+            this.samples = samples.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        }
+    }
+
+    /**
+     * Samples loaded from one report or data file.
+     */
+    private static class ResultSet {
+        final String spec;
+        final boolean perOperation;
+        final List<Metric> metrics = new ArrayList<>();
+        int runs;
+        long operations;
+        double successPercent;
+
+        ResultSet(String spec, boolean perOperation) {
+            this.spec = spec;
+            this.perOperation = perOperation;
+        }
+
+        String describe() {
+            return perOperation
+                    ? String.format("%s (data file, %d operations, %.2f%% succeeded)", spec, operations, successPercent)
+                    : String.format("%s (report file, %d runs, %.2f%% succeeded)", spec, runs, successPercent);
+        }
+    }
+
+    /**
+     * Run the compare command.
+     *
+     * @param args Arguments after "compare"
+     * @return Exit code: 0, {@link #EXIT_REGRESSION}, or 1 for bad input
+     */
+    public static int run(String[] args) {
+        Options options = new Options();
+        CommandLine cmd = new CommandLine(options);
+        cmd.setCommandName("compare");
+        try {
+            cmd.parseArgs(args);
+            if (options.help) {
+                CommandLine.usage(options, System.out);
+                return 0;
+            }
+            if (options.threshold < 0 || options.confidence <= 0 || options.confidence >= 1) {
+                throw new CommandLine.ParameterException(cmd,
+                        "--threshold must not be negative and --confidence must be between 0 and 1");
+            }
+            ResultSet baseline;
+            ResultSet candidate;
+            try {
+                baseline = load(options.baseline);
+                candidate = load(options.candidate);
+            } catch (IllegalArgumentException e) {
+                throw new CommandLine.ParameterException(cmd, e.getMessage());
+            }
+            if (baseline.perOperation != candidate.perOperation) {
+                throw new CommandLine.ParameterException(cmd,
+                        "Cannot compare a report file with a data file");
+            }
+            return compare(baseline, candidate, options) ? EXIT_REGRESSION : 0;
+        } catch (CommandLine.ParameterException e) {
+            System.err.println(e.getMessage());
+            cmd.usage(System.err);
+            return 1;
+        }
+    }
+
+    private static ResultSet load(String spec) {
+        String file = spec;
+        String tag = "";
+        int colon = spec.lastIndexOf(':');
+        if (colon >= 0) {
+            file = spec.substring(0, colon);
+            tag = spec.substring(colon + 1);
+        }
+        List<String[]> rows = new ArrayList<>();
+        Map<String, Integer> columns = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file))) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException(file + " is empty");
+            }
+            String[] names = header.split(",");
+            for (int i = 0; i < names.length; i++) {
+                columns.put(names[i].trim(), i);
+            }
+            if (!columns.containsKey("tag")) {
+                throw new IllegalArgumentException(file + " is neither a report nor a data file");
+            }
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",", -1);
+                if (fields.length != names.length) {
+                    // Appended by a version that wrote other columns
+                    throw new IllegalArgumentException(file + " line " + lineNumber + " has " + fields.length
+                            + " fields but the header has " + names.length);
+                }
+                if (tag.isEmpty() || tag.equals(fields[columns.get("tag")])) {
+                    rows.add(fields);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read " + file + ": " + e.getMessage(), e);
+        }
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException(file + " has no results" + (tag.isEmpty() ? "" : " tagged " + tag));
+        }
+        try {
+            if (columns.containsKey("latency_ms") && columns.containsKey("timestamp_ms")) {
+                return fromData(spec, rows, columns);
+            }
+            if (columns.containsKey("throughput_mbps")) {
+                return fromReport(spec, rows, columns);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Bad line in " + file + ": " + e.getMessage(), e);
+        }
+        throw new IllegalArgumentException(file + " is neither a report nor a data file");
+    }
+
+    /**
+     * One sample per run. Per-operation-type lines of mixed runs have no
+     * run-level columns and are skipped.
+     */
+    private static ResultSet fromReport(String spec, List<String[]> rows, Map<String, Integer> columns) {
+        ResultSet set = new ResultSet(spec, false);
+        Integer runColumn = columns.get("hedges_sent");
+        List<Double> throughput = new ArrayList<>();
+        List<Double> p50 = new ArrayList<>();
+        List<Double> p95 = new ArrayList<>();
+        List<Double> p99 = new ArrayList<>();
+        double succeeded = 0;
+        for (String[] row : rows) {
+            if (runColumn != null && row[runColumn].isEmpty()) {
+                continue;
+            }
+            long operations = Long.parseLong(row[columns.get("runs")]);
+            throughput.add(Double.parseDouble(row[columns.get("throughput_mbps")]));
+            p50.add(Double.parseDouble(row[columns.get("p50_ms")]));
+            p95.add(Double.parseDouble(row[columns.get("p95_ms")]));
+            p99.add(Double.parseDouble(row[columns.get("p99_ms")]));
+            succeeded += operations * Double.parseDouble(row[columns.get("success_rate")]) / 100;
+            set.operations += operations;
+            set.runs++;
+        }
+        set.successPercent = set.operations == 0 ? 0.0 : succeeded * 100 / set.operations;
+        set.metrics.add(new Metric("MiB/s", false, MEAN, throughput));
+        set.metrics.add(new Metric("p50 ms", true, MEAN, p50));
+        set.metrics.add(new Metric("p95 ms", true, MEAN, p95));
+        set.metrics.add(new Metric("p99 ms", true, MEAN, p99));
+        return set;
+    }
+
+    /**
+     * One latency sample per successful operation and one throughput sample
+     * per {@link #DATA_WINDOW_MS} of completions.
+     */
+    private static ResultSet fromData(String spec, List<String[]> rows, Map<String, Integer> columns) {
+        ResultSet set = new ResultSet(spec, true);
+        List<Double> latencies = new ArrayList<>();
+        // Window start -> bytes (or operations if nothing was transferred)
+        TreeMap<Long, long[]> windows = new TreeMap<>();
+        long firstMs = Long.MAX_VALUE;
+        long totalBytes = 0;
+        for (String[] row : rows) {
+            firstMs = Math.min(firstMs, Long.parseLong(row[columns.get("timestamp_ms")]));
+        }
+        for (String[] row : rows) {
+            set.operations++;
+            if (!Boolean.parseBoolean(row[columns.get("success")])) {
+                continue;
+            }
+            long bytes = Long.parseLong(row[columns.get("bytes")]);
+            long window = (Long.parseLong(row[columns.get("timestamp_ms")]) - firstMs) / DATA_WINDOW_MS;
+            long[] counts = windows.computeIfAbsent(window, w -> new long[2]);
+            counts[0] += bytes;
+            counts[1]++;
+            totalBytes += bytes;
+            latencies.add(Double.parseDouble(row[columns.get("latency_ms")]));
+        }
+        set.successPercent = latencies.size() * 100.0 / set.operations;
+        if (latencies.isEmpty()) {
+            throw new IllegalArgumentException(spec + " has no successful operations");
+        }
+        // The last window is partial. Windows without completions are gaps
+        // between runs appended to the same file and are left out too.
+        if (windows.size() > 1) {
+            windows.remove(windows.lastKey());
+        }
+        double seconds = DATA_WINDOW_MS / 1000.0;
+        List<Double> throughput = new ArrayList<>();
+        for (long[] counts : windows.values()) {
+            throughput.add(totalBytes > 0 ? counts[0] / 1024.0 / 1024.0 / seconds : counts[1] / seconds);
+        }
+        set.metrics.add(new Metric(totalBytes > 0 ? "MiB/s" : "ops/s", false, MEAN, throughput));
+        set.metrics.add(new Metric("p50 ms", true, percentile(50), latencies));
+        set.metrics.add(new Metric("p95 ms", true, percentile(95), latencies));
+        set.metrics.add(new Metric("p99 ms", true, percentile(99), latencies));
+        return set;
+    }
+
+    /**
+     * @return Whether any metric regressed significantly
+     */
+    private static boolean compare(ResultSet baseline, ResultSet candidate, Options options) {
+        System.out.println("Baseline:  " + baseline.describe());
+        System.out.println("Candidate: " + candidate.describe());
+        System.out.printf("Comparison (%.0f%% confidence, threshold %.1f%%):%n", options.confidence * 100,
+                options.threshold);
+        String row = "  %-8s %12s %12s %9s %20s %8s  %s%n";
+        System.out.printf(row, "metric", "baseline", "candidate", "change", "interval", "p", "verdict");
+
+        RandomGenerator random = new Well19937c(SEED);
+        MannWhitneyUTest mannWhitney = new MannWhitneyUTest();
+        boolean regressed = false;
+        boolean noInterval = false;
+        // Mann-Whitney p-value of the whole latency distribution of data files
+        String distributionP = null;
+        for (int m = 0; m < baseline.metrics.size(); m++) {
+            Metric before = baseline.metrics.get(m);
+            Metric after = candidate.metrics.get(m);
+            if (!before.name.equals(after.name)) {
+                System.err.printf("WARN: Baseline has %s and candidate %s; throughput not compared%n",
+                        before.name, after.name);
+                continue;
+            }
+            double base = before.estimator.estimate(before.samples);
+            double value = after.estimator.estimate(after.samples);
+            double change = base == 0 ? Double.NaN : (value - base) / base * 100;
+            String interval = "-";
+            String p = "-";
+            String verdict = "no change";
+            if (before.samples.length > 1 && after.samples.length > 1 && base != 0) {
+                double[] baseReplicates = before.estimator.bootstrap(before.samples, random);
+                double[] replicates = after.estimator.bootstrap(after.samples, random);
+                double[] changes = new double[RESAMPLES];
+                for (int r = 0; r < RESAMPLES; r++) {
+                    changes[r] = baseReplicates[r] == 0 ? 0.0
+                            : (replicates[r] - baseReplicates[r]) / baseReplicates[r] * 100;
+                }
+                Arrays.sort(changes);
+                double alpha = (1 - options.confidence) / 2;
+                double lower = changes[(int) Math.floor(alpha * (RESAMPLES - 1))];
+                double upper = changes[(int) Math.ceil((1 - alpha) * (RESAMPLES - 1))];
+                interval = String.format("[%+.1f%%, %+.1f%%]", lower, upper);
+                String metricP = String.format("%.4f", mannWhitney.mannWhitneyUTest(before.samples, after.samples));
+                if (baseline.perOperation && before.lowerIsBetter) {
+                    // The same test for every percentile; it does not test any one of them
+                    distributionP = metricP;
+                } else {
+                    p = metricP;
+                }
+
+                boolean worse = before.lowerIsBetter ? lower > 0 : upper < 0;
+                boolean better = before.lowerIsBetter ? upper < 0 : lower > 0;
+                if (Math.abs(change) >= options.threshold && (worse || better)) {
+                    verdict = worse ? "REGRESSION" : "improvement";
+                    regressed |= worse;
+                }
+            } else {
+                noInterval = true;
+                verdict = "not tested";
+            }
+            System.out.printf(row, before.name, String.format("%.2f", base), String.format("%.2f", value),
+                    Double.isNaN(change) ? "-" : String.format("%+.1f%%", change), interval, p, verdict);
+        }
+        if (distributionP != null) {
+            System.out.println("  Latency distribution: Mann-Whitney p = " + distributionP
+                    + " (all operations; not a per-percentile test)");
+        }
+        if (noInterval) {
+            System.err.println("WARN: A side has a single sample; repeat runs under the same --report_tag "
+                    + "to test the change");
+        }
+        if (candidate.successPercent < baseline.successPercent) {
+            System.err.printf("WARN: Fewer operations succeeded: %.2f%% -> %.2f%%%n", baseline.successPercent,
+                    candidate.successPercent);
+        }
+        System.out.println(regressed ? "Result: candidate regressed" : "Result: no significant regression");
+        return regressed;
+    }
+}
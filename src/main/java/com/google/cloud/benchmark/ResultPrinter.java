@@ -3,8 +3,12 @@ package com.google.cloud.benchmark;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 import java.util.List;
+import java.util.Map;
 
 public class ResultPrinter {
+    private static final double HISTOGRAM_FIRST_BOUND_MS = 0.125;
+    private static final int HISTOGRAM_BUCKETS = 20;
+
     public static void printResults(List<Double> latenciesMs, long totalBytes, long totalTimeMs) {
         DescriptiveStatistics stats = new DescriptiveStatistics();
         for (Double latency : latenciesMs) {
@@ -24,4 +28,201 @@ public class ResultPrinter {
         System.out.printf("  p99: %.2f%n", stats.getPercentile(99));
         System.out.printf("  Max: %.2f%n", stats.getMax());
     }
+
+    public static void printOpenLoopStats(StatWatcher watcher, double rate, long totalTimeMs) {
+        System.out.printf("Rate: %.2f ops/s offered, %.2f ops/s completed%n", rate,
+                totalTimeMs == 0 ? 0.0 : watcher.getLatencies().size() * 1000.0 / totalTimeMs);
+    }
+
+    public static void printMetadataStats(ObjectMetadataCache cache) {
+        DescriptiveStatistics stats = new DescriptiveStatistics();
+        for (Double latency : cache.getMetadataWatcher().getLatencies()) {
+            stats.addValue(latency);
+        }
+
+        System.out.println("Metadata cache:");
+        if (cache.getPrefillCount() > 0) {
+            System.out.printf("  Prefilled: %d%n", cache.getPrefillCount());
+        }
+        System.out.printf("  Hits: %d%n", cache.getHitCount());
+        System.out.printf("  Misses: %d%n", cache.getMissCount());
+        if (stats.getN() > 0) {
+            System.out.printf("  Lookup latency (ms): p50 %.2f, p99 %.2f, max %.2f%n",
+                    stats.getPercentile(50), stats.getPercentile(99), stats.getMax());
+        }
+    }
+
+    public static void printWarmupStats(StatWatcher watcher, BenchmarkParameters parameters) {
+        SteadyStateDetector.Summary warmup = watcher.getWarmup();
+        System.out.println("Warmup:");
+        System.out.printf("  %s after %d operations in %.1f s (%d windows of %d ms)%n",
+                warmup.steady ? "Steady" : "Not steady", warmup.operations, warmup.durationMs / 1000.0,
+                warmup.windows, parameters.warmupWindowMs);
+        if (!warmup.steady) {
+            System.err.printf("WARN: Throughput and latency did not settle within --warmup_max_sec=%d%n",
+                    parameters.warmupMaxSec);
+        }
+        SteadyStateDetector.Drift drift = SteadyStateDetector.drift(watcher.getOperations(), parameters.warmupWindowMs);
+        if (drift.windows < 3) {
+            System.out.println("  Drift: timed phase too short to judge");
+            return;
+        }
+        System.out.printf("  Drift: throughput %+.1f%% from first to last third of the timed phase (CV %.3f over %d windows)%n",
+                drift.driftPercent, drift.throughputCv, drift.windows);
+        if (Math.abs(drift.driftPercent) > parameters.warmupCv * 100) {
+            System.err.printf("WARN: Timed phase drifted by %+.1f%%; results may not be steady state%n",
+                    drift.driftPercent);
+        }
+    }
+
+    public static void printWireStats(StatWatcher watcher) {
+        System.out.println("Traffic:");
+        if (watcher.getWireBytesSent() > 0 || watcher.getWireBytesReceived() > 0) {
+            System.out.printf("  Sent: %d bytes on wire, %d uncompressed%n",
+                    watcher.getWireBytesSent(), watcher.getUncompressedBytesSent());
+            System.out.printf("  Received: %d bytes on wire, %d uncompressed%n",
+                    watcher.getWireBytesReceived(), watcher.getUncompressedBytesReceived());
+        }
+        System.out.printf("  CPU: %.2f s (%.3f s per logical GiB)%n",
+                watcher.getCpuTimeNanos() / 1e9, watcher.getCpuSecondsPerGib());
+        if (watcher.getCpuTimeNanos() > 0) {
+            double cpuSeconds = watcher.getCpuTimeNanos() / 1e9;
+            System.out.printf("  Per CPU core: %.3f GiB/s, %.0f ops/s%n",
+                    watcher.getTotalBytes() / (1024.0 * 1024.0 * 1024.0) / cpuSeconds,
+                    watcher.getLatencies().size() / cpuSeconds);
+        }
+        SchedulerStats.CpuSummary cpu = watcher.getCpuSummary();
+        if (cpu.totalNanos() > 0) {
+            System.out.printf("  CPU user/system: %.2f s / %.2f s%n", cpu.userNanos / 1e9, cpu.systemNanos / 1e9);
+            System.out.printf("  CPU per byte: %.3f ns, per operation: %.0f us%n",
+                    watcher.getCpuNanosPerByte(), watcher.getCpuNanosPerOperation() / 1e3);
+            long bytes = watcher.getTotalBytes();
+            int operations = watcher.getLatencies().size();
+            for (SchedulerStats.Group group : SchedulerStats.Group.values()) {
+                long nanos = cpu.groupNanos(group);
+                System.out.printf("    %-6s %.2f s (%.0f%%), %.3f ns/byte, %.0f us/op%n", group.label() + ":",
+                        nanos / 1e9, 100.0 * nanos / cpu.totalNanos(),
+                        bytes == 0 ? 0.0 : (double) nanos / bytes,
+                        operations == 0 ? 0.0 : nanos / 1e3 / operations);
+            }
+        }
+        System.out.printf("  Context switches: %d voluntary, %d involuntary%n",
+                watcher.getVoluntaryContextSwitches(), watcher.getInvoluntaryContextSwitches());
+        System.out.printf("  Peak threads: %d%n", watcher.getPeakThreads());
+    }
+
+    public static void printMemoryStats(StatWatcher watcher) {
+        MemoryStats.Summary memory = watcher.getMemory();
+        int operations = watcher.getOperations().size();
+        System.out.println("Memory:");
+        System.out.printf("  Allocated: %.1f MiB (%.1f KiB per operation)%n",
+                memory.allocatedBytes / (1024.0 * 1024.0),
+                operations == 0 ? 0.0 : memory.allocatedBytes / 1024.0 / operations);
+        System.out.printf("  GC pauses: %d, %d ms total, %d ms max%n",
+                memory.gcPauses, memory.gcPauseMs, memory.gcMaxPauseMs);
+        System.out.printf("  Peak heap: %.1f MiB%n", memory.peakHeapBytes / (1024.0 * 1024.0));
+        System.out.printf("  Peak direct memory: %.1f MiB (Netty pooled allocator %.1f MiB)%n",
+                memory.peakDirectBytes / (1024.0 * 1024.0), memory.peakNettyPooledBytes / (1024.0 * 1024.0));
+    }
+
+    public static void printSweepSummary(List<Map<String, String>> points, List<Main.RunResult> results) {
+        System.out.println();
+        System.out.println("Sweep Results:");
+        int width = "point".length();
+        for (Map<String, String> point : points) {
+            width = Math.max(width, ParameterSweep.describe(point).length());
+        }
+        String row = "  %-" + width + "s %10s %10s %10s %10s%n";
+        System.out.printf(row, "point", "MiB/s", "p50 ms", "p99 ms", "CPU s/GiB");
+        for (int i = 0; i < points.size(); i++) {
+            Main.RunResult result = results.get(i);
+            DescriptiveStatistics stats = new DescriptiveStatistics();
+            for (Double latency : result.watcher.getLatencies()) {
+                stats.addValue(latency);
+            }
+            System.out.printf(row, ParameterSweep.describe(points.get(i)),
+                    String.format("%.2f", result.throughputMibps()),
+                    String.format("%.2f", stats.getPercentile(50)),
+                    String.format("%.2f", stats.getPercentile(99)),
+                    String.format("%.3f", result.watcher.getCpuSecondsPerGib()));
+        }
+    }
+
+    public static void printSubchannelStats(StatWatcher watcher) {
+        Map<String, StatWatcher.SubchannelStats> subchannels = watcher.getSubchannelStats();
+        long totalReceived = 0;
+        for (StatWatcher.SubchannelStats stats : subchannels.values()) {
+            totalReceived += stats.bytesReceived.get();
+        }
+        System.out.println("Subchannels: " + subchannels.size());
+        for (Map.Entry<String, StatWatcher.SubchannelStats> entry : subchannels.entrySet()) {
+            StatWatcher.SubchannelStats stats = entry.getValue();
+            System.out.printf("  %s: %d streams, %d bytes sent, %d bytes received (%.1f%%)%n",
+                    entry.getKey(), stats.streams.get(), stats.bytesSent.get(), stats.bytesReceived.get(),
+                    totalReceived == 0 ? 0.0 : 100.0 * stats.bytesReceived.get() / totalReceived);
+        }
+    }
+
+    public static void printHedgeStats(StatWatcher watcher) {
+        System.out.println("Hedging:");
+        System.out.printf("  Hedges sent: %d%n", watcher.getHedgesSent());
+        System.out.printf("  Hedges won: %d%n", watcher.getHedgesWon());
+        System.out.printf("  Extra bytes: %d%n", watcher.getHedgeExtraBytes());
+    }
+
+    public static void printOperationBreakdown(StatWatcher watcher, long totalTimeMs) {
+        System.out.println("Per operation:");
+        for (String type : watcher.getOperationTypes()) {
+            DescriptiveStatistics stats = new DescriptiveStatistics();
+            long count = 0;
+            long failures = 0;
+            long bytes = 0;
+            for (StatWatcher.OperationRecord op : watcher.getOperations()) {
+                if (!op.operation.equals(type)) {
+                    continue;
+                }
+                count++;
+                if (op.success) {
+                    stats.addValue(op.latencyMs);
+                    bytes += op.bytes;
+                } else {
+                    failures++;
+                }
+            }
+            System.out.printf("  %s: %d ops (%.1f ops/s), %d failed, %d bytes, p50 %.2f ms, p99 %.2f ms%n",
+                    type, count, count / (Math.max(1, totalTimeMs) / 1000.0), failures, bytes,
+                    stats.getPercentile(50), stats.getPercentile(99));
+            printLatencyHistogram(stats.getValues());
+        }
+    }
+
+    /**
+     * Print a latency histogram with power-of-two millisecond buckets,
+     * starting at 0.125 ms so sub-millisecond metadata calls are resolved.
+     */
+    private static void printLatencyHistogram(double[] latenciesMs) {
+        if (latenciesMs.length == 0) {
+            return;
+        }
+        int[] counts = new int[HISTOGRAM_BUCKETS];
+        for (double latency : latenciesMs) {
+            int bucket = 0;
+            double bound = HISTOGRAM_FIRST_BOUND_MS;
+            while (latency > bound && bucket < HISTOGRAM_BUCKETS - 1) {
+                bound *= 2;
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+        double bound = HISTOGRAM_FIRST_BOUND_MS;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++, bound *= 2) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            String label = i == HISTOGRAM_BUCKETS - 1
+                    ? String.format(">  %9.3f ms", bound / 2)
+                    : String.format("<= %9.3f ms", bound);
+            System.out.printf("    %s: %d (%.1f%%)%n", label, counts[i], 100.0 * counts[i] / latenciesMs.length);
+        }
+    }
 }
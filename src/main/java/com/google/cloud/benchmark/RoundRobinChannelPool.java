@@ -1,11 +1,11 @@
 package com.google.cloud.benchmark;
 
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.storage.v2.StorageGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
-import io.grpc.auth.MoreCallCredentials;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Supplier;
@@ -40,15 +40,19 @@ public class RoundRobinChannelPool implements StorageStubProvider {
         int index = (channelRotator.getAndIncrement() & Integer.MAX_VALUE) % channels.length();
         ManagedChannel channel = channels.get(index);
 
-        StorageGrpc.StorageBlockingStub blockingStub = StorageGrpc.newBlockingStub(channel);
-        StorageGrpc.StorageStub asyncStub = StorageGrpc.newStub(channel);
+        return StorageStubProvider.createStubHolder(channel, cachedCredentials, parameters);
+    }
 
-        if (cachedCredentials != null) {
-            blockingStub = blockingStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
-            asyncStub = asyncStub.withCallCredentials(MoreCallCredentials.from(cachedCredentials));
+    @Override
+    public StubHolder getStub(ManagedChannel exclude) {
+        for (int attempt = 0; attempt < channels.length(); attempt++) {
+            int index = (channelRotator.getAndIncrement() & Integer.MAX_VALUE) % channels.length();
+            ManagedChannel channel = channels.get(index);
+            if (channel != exclude) {
+                return StorageStubProvider.createStubHolder(channel, cachedCredentials, parameters);
+            }
         }
-
-        return new StubHolder(blockingStub, asyncStub, channel);
+        return getStub();
     }
 
     @Override
@@ -74,6 +78,15 @@ public class RoundRobinChannelPool implements StorageStubProvider {
         }
     }
 
+    @Override
+    public void preconnect(int threads, long timeoutMs) {
+        List<ManagedChannel> all = new ArrayList<>();
+        for (int i = 0; i < channels.length(); i++) {
+            all.add(channels.get(i));
+        }
+        ChannelFactory.connect(all, timeoutMs);
+    }
+
     @Override
     public void shutdown() {
         for (int i = 0; i < channels.length(); i++) {
@@ -24,11 +24,12 @@ public interface RunnerWatcher {
     /**
      * Notify completion of an operation with detailed metrics.
      * 
+     * @param operation    Operation type (read, random-read, write, ...)
      * @param threadId     ID of the thread that performed the operation
      * @param channelId    ID of the channel used (for gRPC)
      * @param peer         Peer/backend that served the request
      * @param object       Object name
-     * @param latencyMs    Total latency in milliseconds
+     * @param latencyMs    Total latency in milliseconds (fractional)
      * @param bytes        Total bytes processed
      * @param success      Whether the operation succeeded
      * @param errorCode    Error code if failed (empty if success)
@@ -36,14 +37,41 @@ public interface RunnerWatcher {
      * @param chunks       Per-chunk timing data (may be empty)
      */
     void notifyCompleted(
+            String operation,
             int threadId,
             int channelId,
             String peer,
             String object,
-            long latencyMs,
+            double latencyMs,
             long bytes,
             boolean success,
             String errorCode,
             String errorMessage,
             List<ChunkRecord> chunks);
+
+    /**
+     * Notify that a hedge request was sent for a read.
+     * 
+     * @param won        Whether the hedge request finished before the primary
+     * @param extraBytes Bytes received by the losing request
+     */
+    void notifyHedge(boolean won, long extraBytes);
+
+    /**
+     * Notify that the warmup is over and the timed phase starts.
+     * 
+     * @param warmup How long the warmup took
+     */
+    void notifyWarmupDone(SteadyStateDetector.Summary warmup);
+
+    /**
+     * Notify that the timed phase starts: warmup, metadata prefill and
+     * preconnect are over and the measured operations are about to be issued.
+     */
+    void notifyTimedPhaseStarted();
+
+    /**
+     * Notify that the last operation of the timed phase completed.
+     */
+    void notifyTimedPhaseEnded();
 }
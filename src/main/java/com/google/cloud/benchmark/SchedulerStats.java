@@ -0,0 +1,267 @@
+package com.google.cloud.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts context switches, CPU time and threads of this process during a
+ * run. Linux only keeps per-thread counters in /proc, and those disappear
+ * when a thread exits, so the counters of every thread are sampled
+ * periodically and the last value seen per thread is kept. Process-wide user
+ * and system time come from /proc/self/stat, which includes exited threads,
+ * and are also the CPU time the per-byte and per-operation figures divide.
+ * On other systems only the total CPU time is known, from the JVM, and the
+ * other counts stay zero.
+ */
+public class SchedulerStats implements StatWatcher.PhaseSampler {
+    private static final Path SELF_STAT = Paths.get("/proc/self/stat");
+    private static final Path TASK_DIR = Paths.get("/proc/self/task");
+    private static final long SAMPLE_INTERVAL_MS = 100;
+    /** USER_HZ, the unit of /proc CPU times; 100 on every common Linux build */
+    private static final long NANOS_PER_TICK = 10_000_000L;
+
+    /** Thread name prefix of the runner worker pools. */
+    static final String WORKER_THREAD_PREFIX = "bench-worker-";
+
+    /**
+     * CPU time of one run, split by user/system and by thread group. The
+     * groups add up to the process total; time of threads that exited
+     * between samples is counted as other.
+     */
+    public static class CpuSummary {
+        public static final CpuSummary EMPTY = new CpuSummary(0, 0, new long[Group.values().length]);
+
+        public final long userNanos;
+        public final long systemNanos;
+        private final long[] groupNanos;
+
+        CpuSummary(long userNanos, long systemNanos, long[] groupNanos) {
+            this.userNanos = userNanos;
+            this.systemNanos = systemNanos;
+            this.groupNanos = groupNanos;
+        }
+
+        public long totalNanos() {
+            return userNanos + systemNanos;
+        }
+
+        public long groupNanos(Group group) {
+            return groupNanos[group.ordinal()];
+        }
+    }
+
+    /**
+     * Thread groups, recognized by thread name.
+     */
+    public enum Group {
+        /** Runner worker threads */
+        WORKER,
+        /** gRPC executors and Netty event loops */
+        IO,
+        /** Garbage collector threads */
+        GC,
+        /** JIT compilers and the VM thread, which also runs the serial collector */
+        JVM,
+        OTHER;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+
+        static Group of(String name) {
+            if (name.startsWith(WORKER_THREAD_PREFIX)) {
+                return WORKER;
+            }
+            if (name.startsWith("grpc-") || name.startsWith("gcs-bench-nio") || name.startsWith("gcs-bench-epol")
+                    || name.startsWith("gcs-bench-call")) {
+                return IO;
+            }
+            if (name.startsWith("GC Thread") || name.startsWith("G1 ") || name.startsWith("ZWorker")
+                    || name.startsWith("ZDriver") || name.startsWith("Shenandoah") || name.startsWith("Parallel GC")) {
+                return GC;
+            }
+            if (name.startsWith("C1 Compiler") || name.startsWith("C2 Compiler") || name.equals("VM Thread")) {
+                return JVM;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Counters of one thread.
+     */
+    private static class TaskCounters {
+        String name = "";
+        long voluntary;
+        long involuntary;
+        long cpuTicks;
+    }
+
+    private final Map<String, TaskCounters> baseline = new HashMap<>();
+    private final Map<String, TaskCounters> latest = new HashMap<>();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private long[] processBaseline = new long[2];
+    private long jvmCpuBaseline;
+    private Thread sampler;
+    private volatile boolean running;
+
+    /**
+     * Record the current counters and start sampling.
+     */
+    @Override
+    public void start() {
+        synchronized (this) {
+            sample(baseline);
+            latest.clear();
+            processBaseline = readProcessTicks();
+            jvmCpuBaseline = jvmCpuTime();
+        }
+        threads.resetPeakThreadCount();
+        running = true;
+        sampler = new Thread(() -> {
+            while (running) {
+                synchronized (this) {
+                    sample(latest);
+                }
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "gcs-bench-sched-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stop sampling and store the totals since {@link #start()} in the
+     * watcher.
+     */
+    @Override
+    public void stop(StatWatcher watcher) {
+        running = false;
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long voluntary = 0;
+        long involuntary = 0;
+        long[] groupTicks = new long[Group.values().length];
+        long[] processTicks;
+        long jvmCpuNanos;
+        synchronized (this) {
+            sample(latest);
+            processTicks = readProcessTicks();
+            jvmCpuNanos = jvmCpuTime() - jvmCpuBaseline;
+            for (Map.Entry<String, TaskCounters> entry : latest.entrySet()) {
+                TaskCounters now = entry.getValue();
+                TaskCounters before = baseline.getOrDefault(entry.getKey(), new TaskCounters());
+                voluntary += now.voluntary - before.voluntary;
+                involuntary += now.involuntary - before.involuntary;
+                groupTicks[Group.of(now.name).ordinal()] += now.cpuTicks - before.cpuTicks;
+            }
+        }
+        watcher.setContextSwitches(voluntary, involuntary);
+        // The sampler itself is not part of the workload
+        watcher.setPeakThreads(Math.max(0, threads.getPeakThreadCount() - 1));
+
+        long userTicks = processTicks[0] - processBaseline[0];
+        long systemTicks = processTicks[1] - processBaseline[1];
+        long[] groupNanos = new long[groupTicks.length];
+        long classified = 0;
+        for (Group group : Group.values()) {
+            if (group != Group.OTHER) {
+                groupNanos[group.ordinal()] = groupTicks[group.ordinal()] * NANOS_PER_TICK;
+                classified += groupNanos[group.ordinal()];
+            }
+        }
+        long totalNanos = (userTicks + systemTicks) * NANOS_PER_TICK;
+        groupNanos[Group.OTHER.ordinal()] = Math.max(0, totalNanos - classified);
+        watcher.setCpuSummary(new CpuSummary(userTicks * NANOS_PER_TICK, systemTicks * NANOS_PER_TICK,
+                groupNanos));
+        // The same total as the groups, so that the breakdown adds up
+        watcher.setCpuTimeNanos(Files.isReadable(SELF_STAT) ? totalNanos : jvmCpuNanos);
+    }
+
+    private static long jvmCpuTime() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    private static void sample(Map<String, TaskCounters> counters) {
+        if (!Files.isDirectory(TASK_DIR)) {
+            return;
+        }
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(TASK_DIR)) {
+            for (Path task : tasks) {
+                TaskCounters taskCounters = readTask(task);
+                if (taskCounters != null) {
+                    counters.put(task.getFileName().toString(), taskCounters);
+                }
+            }
+        } catch (IOException e) {
+            // Threads can exit while the directory is read; the next sample catches up
+        }
+    }
+
+    private static TaskCounters readTask(Path task) {
+        List<String> lines;
+        String stat;
+        try {
+            lines = Files.readAllLines(task.resolve("status"));
+            stat = new String(Files.readAllBytes(task.resolve("stat")));
+        } catch (IOException e) {
+            return null;
+        }
+        TaskCounters counters = new TaskCounters();
+        for (String line : lines) {
+            if (line.startsWith("voluntary_ctxt_switches:")) {
+                counters.voluntary = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+                counters.involuntary = Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        long[] ticks = parseTicks(stat);
+        counters.cpuTicks = ticks[0] + ticks[1];
+        int open = stat.indexOf('(');
+        int close = stat.lastIndexOf(')');
+        if (open >= 0 && close > open) {
+            counters.name = stat.substring(open + 1, close);
+        }
+        return counters;
+    }
+
+    private static long[] readProcessTicks() {
+        try {
+            return parseTicks(new String(Files.readAllBytes(SELF_STAT)));
+        } catch (IOException e) {
+            return new long[2];
+        }
+    }
+
+    /**
+     * @return utime and stime of a /proc stat line, in clock ticks
+     */
+    private static long[] parseTicks(String stat) {
+        // The name can contain spaces, so count fields from after it
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+        if (fields.length < 13) {
+            return new long[2];
+        }
+        return new long[] {Long.parseLong(fields[11]), Long.parseLong(fields[12])};
+    }
+}
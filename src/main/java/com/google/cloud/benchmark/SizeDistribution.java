@@ -0,0 +1,28 @@
+package com.google.cloud.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of object sizes used by workload profiles.
+ */
+public interface SizeDistribution {
+
+    /**
+     * @return A size in bytes drawn from the distribution
+     */
+    default long sample() {
+        return sample(ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param random Source of randomness, e.g. seeded for reproducible sizes
+     * @return A size in bytes drawn from the distribution
+     */
+    long sample(Random random);
+
+    /**
+     * @return The largest size the distribution can return
+     */
+    long max();
+}
@@ -0,0 +1,192 @@
+package com.google.cloud.benchmark;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Size distributions available to workload profiles: fixed, uniform,
+ * log-normal and histogram.
+ */
+public class SizeDistributions {
+
+    /**
+     * JSON form of a size distribution, e.g.
+     * {"distribution": "lognormal", "median": 1048576, "sigma": 1.5, "max": 67108864}.
+     */
+    static class Spec {
+        String distribution = "fixed";
+        long value;
+        long min;
+        long max;
+        long median;
+        double sigma;
+        List<Bucket> buckets;
+    }
+
+    /**
+     * One histogram bucket: objects of the given size, picked by weight.
+     */
+    static class Bucket {
+        long size;
+        double weight = 1.0;
+    }
+
+    /**
+     * Create a distribution from its JSON form.
+     *
+     * @param spec        The parsed spec, or null
+     * @param defaultSize Size to use if no spec is given
+     */
+    public static SizeDistribution fromSpec(Spec spec, long defaultSize) {
+        if (spec == null) {
+            return new Fixed(defaultSize);
+        }
+        switch (spec.distribution.toLowerCase()) {
+            case "fixed":
+                return new Fixed(spec.value);
+            case "uniform":
+                if (spec.max <= spec.min) {
+                    throw new IllegalArgumentException("uniform size needs min < max");
+                }
+                return new Uniform(spec.min, spec.max);
+            case "lognormal":
+                if (spec.median <= 0 || spec.max <= 0) {
+                    throw new IllegalArgumentException("lognormal size needs median and max");
+                }
+                return new LogNormal(spec.median, spec.sigma, Math.max(1, spec.min), spec.max);
+            case "histogram":
+                if (spec.buckets == null || spec.buckets.isEmpty()) {
+                    throw new IllegalArgumentException("histogram size needs buckets");
+                }
+                return new Histogram(spec.buckets);
+            default:
+                throw new IllegalArgumentException("Unknown size distribution: " + spec.distribution);
+        }
+    }
+
+    /**
+     * Create a distribution from a JSON string given on the command line.
+     *
+     * @param json        The JSON spec, or empty for the default size
+     * @param defaultSize Size to use if no spec is given
+     */
+    public static SizeDistribution fromJson(String json, long defaultSize) {
+        if (json == null || json.isEmpty()) {
+            return new Fixed(defaultSize);
+        }
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+        try {
+            return fromSpec(gson.fromJson(json, Spec.class), defaultSize);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Bad size distribution: " + json, e);
+        }
+    }
+
+    static class Fixed implements SizeDistribution {
+        private final long size;
+
+        Fixed(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public long sample(Random random) {
+            return size;
+        }
+
+        @Override
+        public long max() {
+            return size;
+        }
+    }
+
+    static class Uniform implements SizeDistribution {
+        private final long min;
+        private final long max;
+
+        Uniform(long min, long max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public long sample(Random random) {
+            return min + (long) (random.nextDouble() * (max - min + 1));
+        }
+
+        @Override
+        public long max() {
+            return max;
+        }
+    }
+
+    /**
+     * Heavy-tailed sizes, clamped to [min, max].
+     */
+    static class LogNormal implements SizeDistribution {
+        private final double mu;
+        private final double sigma;
+        private final long min;
+        private final long max;
+
+        LogNormal(long median, double sigma, long min, long max) {
+            this.mu = Math.log(median);
+            this.sigma = sigma;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public long sample(Random random) {
+            long size = (long) Math.exp(mu + sigma * random.nextGaussian());
+            return Math.max(min, Math.min(max, size));
+        }
+
+        @Override
+        public long max() {
+            return max;
+        }
+    }
+
+    static class Histogram implements SizeDistribution {
+        private final long[] sizes;
+        private final double[] cumulativeWeights;
+        private final long max;
+
+        Histogram(List<Bucket> buckets) {
+            this.sizes = new long[buckets.size()];
+            this.cumulativeWeights = new double[buckets.size()];
+            long largest = 0;
+            double total = 0;
+            for (int i = 0; i < buckets.size(); i++) {
+                total += buckets.get(i).weight;
+                sizes[i] = buckets.get(i).size;
+                cumulativeWeights[i] = total;
+                largest = Math.max(largest, sizes[i]);
+            }
+            this.max = largest;
+        }
+
+        @Override
+        public long sample(Random random) {
+            double pick = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return sizes[i];
+                }
+            }
+            return sizes[sizes.length - 1];
+        }
+
+        @Override
+        public long max() {
+            return max;
+        }
+    }
+}
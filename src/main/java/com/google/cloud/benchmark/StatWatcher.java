@@ -3,6 +3,10 @@ package com.google.cloud.benchmark;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -14,8 +18,9 @@ public class StatWatcher implements RunnerWatcher {
      * Detailed operation record for result persistence.
      */
     public static class OperationRecord {
+        public final String operation;
         public final long timestampMs;
-        public final long latencyMs;
+        public final double latencyMs;
         public final long bytes;
         public final boolean success;
         public final int threadId;
@@ -27,8 +32,9 @@ public class StatWatcher implements RunnerWatcher {
         public final List<ChunkRecord> chunks;
 
         public OperationRecord(
+                String operation,
                 long timestampMs,
-                long latencyMs,
+                double latencyMs,
                 long bytes,
                 boolean success,
                 int threadId,
@@ -38,6 +44,7 @@ public class StatWatcher implements RunnerWatcher {
                 String errorCode,
                 String errorMessage,
                 List<ChunkRecord> chunks) {
+            this.operation = operation != null ? operation : "";
             this.timestampMs = timestampMs;
             this.latencyMs = latencyMs;
             this.bytes = bytes;
@@ -52,18 +59,61 @@ public class StatWatcher implements RunnerWatcher {
         }
     }
 
+    /**
+     * Process counters sampled over the timed phase only, such as CPU time
+     * and memory, so that they line up with the timed operations they are
+     * divided by.
+     */
+    public interface PhaseSampler {
+        void start();
+
+        /**
+         * Store the totals since {@link #start()} in the watcher.
+         */
+        void stop(StatWatcher watcher);
+    }
+
+    /**
+     * Traffic carried by one subchannel (connection) of a channel.
+     */
+    public static class SubchannelStats {
+        public final AtomicLong streams = new AtomicLong(0);
+        public final AtomicLong bytesSent = new AtomicLong(0);
+        public final AtomicLong bytesReceived = new AtomicLong(0);
+    }
+
     private final List<Double> latencies = Collections.synchronizedList(new ArrayList<>());
     private final List<OperationRecord> operations = Collections.synchronizedList(new ArrayList<>());
     private final AtomicLong totalBytes = new AtomicLong(0);
+    private final AtomicLong hedgesSent = new AtomicLong(0);
+    private final AtomicLong hedgesWon = new AtomicLong(0);
+    private final AtomicLong hedgeExtraBytes = new AtomicLong(0);
+    private final AtomicLong wireBytesSent = new AtomicLong(0);
+    private final AtomicLong wireBytesReceived = new AtomicLong(0);
+    private final AtomicLong uncompressedBytesSent = new AtomicLong(0);
+    private final AtomicLong uncompressedBytesReceived = new AtomicLong(0);
+    private final ConcurrentHashMap<String, SubchannelStats> subchannels = new ConcurrentHashMap<>();
+    private volatile long cpuTimeNanos = 0;
+    private volatile long voluntaryContextSwitches = 0;
+    private volatile long involuntaryContextSwitches = 0;
+    private volatile int peakThreads = 0;
+    private volatile MemoryStats.Summary memory = MemoryStats.Summary.EMPTY;
+    private volatile SchedulerStats.CpuSummary cpu = SchedulerStats.CpuSummary.EMPTY;
+    private volatile SteadyStateDetector.Summary warmup = SteadyStateDetector.Summary.EMPTY;
     private volatile long startTimeMs = 0;
+    private final List<PhaseSampler> phaseSamplers = new CopyOnWriteArrayList<>();
+    private volatile long timedPhaseStartNanos = 0;
+    private volatile long timedPhaseEndNanos = 0;
+    private volatile boolean inTimedPhase = false;
 
     @Override
     public void notifyCompleted(
+            String operation,
             int threadId,
             int channelId,
             String peer,
             String object,
-            long latencyMs,
+            double latencyMs,
             long bytes,
             boolean success,
             String errorCode,
@@ -82,17 +132,133 @@ public class StatWatcher implements RunnerWatcher {
         }
 
         if (success) {
-            latencies.add((double) latencyMs);
+            latencies.add(latencyMs);
             totalBytes.addAndGet(bytes);
         }
 
         // Track detailed record
         operations.add(new OperationRecord(
-                timestampMs, latencyMs, bytes, success,
+                operation, timestampMs, latencyMs, bytes, success,
                 threadId, channelId, peer, object,
                 errorCode, errorMessage, chunks));
     }
 
+    @Override
+    public void notifyHedge(boolean won, long extraBytes) {
+        hedgesSent.incrementAndGet();
+        if (won) {
+            hedgesWon.incrementAndGet();
+        }
+        hedgeExtraBytes.addAndGet(extraBytes);
+    }
+
+    @Override
+    public void notifyWarmupDone(SteadyStateDetector.Summary warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * Sample the counters of a sampler from the start to the end of the
+     * timed phase.
+     */
+    public void addPhaseSampler(PhaseSampler sampler) {
+        phaseSamplers.add(sampler);
+    }
+
+    @Override
+    public void notifyTimedPhaseStarted() {
+        for (PhaseSampler sampler : phaseSamplers) {
+            sampler.start();
+        }
+        timedPhaseStartNanos = System.nanoTime();
+        inTimedPhase = true;
+    }
+
+    @Override
+    public void notifyTimedPhaseEnded() {
+        inTimedPhase = false;
+        timedPhaseEndNanos = System.nanoTime();
+        for (PhaseSampler sampler : phaseSamplers) {
+            sampler.stop(this);
+        }
+    }
+
+    /**
+     * @return Duration of the timed phase, or -1 if the runner did not
+     *         report one
+     */
+    public long getTimedPhaseMs() {
+        if (timedPhaseStartNanos == 0 || timedPhaseEndNanos == 0) {
+            return -1;
+        }
+        return (timedPhaseEndNanos - timedPhaseStartNanos) / 1_000_000;
+    }
+
+    /**
+     * @return Whether the timed phase is running. Traffic is only counted
+     *         then, like the CPU and memory figures it is reported with.
+     */
+    public boolean isInTimedPhase() {
+        return inTimedPhase;
+    }
+
+    public void addWireBytesSent(long bytes) {
+        if (inTimedPhase) {
+            wireBytesSent.addAndGet(bytes);
+        }
+    }
+
+    public void addWireBytesReceived(long bytes) {
+        if (inTimedPhase) {
+            wireBytesReceived.addAndGet(bytes);
+        }
+    }
+
+    public void addUncompressedBytesSent(long bytes) {
+        if (inTimedPhase) {
+            uncompressedBytesSent.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * @param subchannel Connection identifier, e.g. remote and local address
+     * @return Stats of the subchannel, created on first use
+     */
+    public SubchannelStats getSubchannel(String subchannel) {
+        return subchannels.computeIfAbsent(subchannel, k -> new SubchannelStats());
+    }
+
+    public Map<String, SubchannelStats> getSubchannelStats() {
+        return new TreeMap<>(subchannels);
+    }
+
+    public void addUncompressedBytesReceived(long bytes) {
+        if (inTimedPhase) {
+            uncompressedBytesReceived.addAndGet(bytes);
+        }
+    }
+
+    public void setCpuTimeNanos(long cpuTimeNanos) {
+        this.cpuTimeNanos = cpuTimeNanos;
+    }
+
+    public void setContextSwitches(long voluntary, long involuntary) {
+        this.voluntaryContextSwitches = voluntary;
+        this.involuntaryContextSwitches = involuntary;
+    }
+
+    public void setPeakThreads(int peakThreads) {
+        this.peakThreads = peakThreads;
+    }
+
+    public void setMemory(MemoryStats.Summary memory) {
+        this.memory = memory;
+    }
+
+    public void setCpuSummary(SchedulerStats.CpuSummary cpu) {
+        this.cpu = cpu;
+    }
+
     public List<Double> getLatencies() {
         return latencies;
     }
@@ -105,7 +271,117 @@ public class StatWatcher implements RunnerWatcher {
         return new ArrayList<>(operations);
     }
 
+    /**
+     * @return Distinct operation types seen, in order of first completion
+     */
+    public List<String> getOperationTypes() {
+        List<String> types = new ArrayList<>();
+        synchronized (operations) {
+            for (OperationRecord op : operations) {
+                if (!types.contains(op.operation)) {
+                    types.add(op.operation);
+                }
+            }
+        }
+        return types;
+    }
+
     public long getStartTimeMs() {
         return startTimeMs;
     }
+
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    public long getHedgeExtraBytes() {
+        return hedgeExtraBytes.get();
+    }
+
+    public long getWireBytesSent() {
+        return wireBytesSent.get();
+    }
+
+    public long getWireBytesReceived() {
+        return wireBytesReceived.get();
+    }
+
+    public long getUncompressedBytesSent() {
+        return uncompressedBytesSent.get();
+    }
+
+    public long getUncompressedBytesReceived() {
+        return uncompressedBytesReceived.get();
+    }
+
+    /**
+     * @return Process CPU time spent during the run, in nanoseconds
+     */
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    public long getVoluntaryContextSwitches() {
+        return voluntaryContextSwitches;
+    }
+
+    public long getInvoluntaryContextSwitches() {
+        return involuntaryContextSwitches;
+    }
+
+    /**
+     * @return Highest number of live JVM threads during the run
+     */
+    public int getPeakThreads() {
+        return peakThreads;
+    }
+
+    /**
+     * @return Allocation, GC and off-heap memory of the run
+     */
+    public MemoryStats.Summary getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return Length of the warmup before the run
+     */
+    public SteadyStateDetector.Summary getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @return User/system CPU time of the run, split by thread group
+     */
+    public SchedulerStats.CpuSummary getCpuSummary() {
+        return cpu;
+    }
+
+    /**
+     * @return CPU nanoseconds per logical (payload) byte
+     */
+    public double getCpuNanosPerByte() {
+        long bytes = totalBytes.get();
+        return bytes == 0 ? 0.0 : (double) cpuTimeNanos / bytes;
+    }
+
+    /**
+     * @return CPU nanoseconds per successful operation
+     */
+    public double getCpuNanosPerOperation() {
+        int count = latencies.size();
+        return count == 0 ? 0.0 : (double) cpuTimeNanos / count;
+    }
+
+    /**
+     * @return CPU seconds spent per GiB of logical (payload) bytes
+     */
+    public double getCpuSecondsPerGib() {
+        long bytes = totalBytes.get();
+        return bytes == 0 ? 0.0 : cpuTimeNanos / 1e9 / (bytes / (1024.0 * 1024.0 * 1024.0));
+    }
 }
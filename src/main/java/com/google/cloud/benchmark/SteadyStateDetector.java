@@ -0,0 +1,232 @@
+package com.google.cloud.benchmark;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive warmup (--adaptive_warmup). Every worker runs warmup operations
+ * until throughput and latency settle: completed operations are collected
+ * in windows of --warmup_window_ms, and the timed phase starts once the
+ * coefficient of variation of both the throughput and the mean latency of
+ * the last {@link #WINDOWS} windows is below --warmup_cv. After the run the
+ * timed phase is cut into the same windows to show whether it drifted.
+ */
+public class SteadyStateDetector {
+    /** Consecutive windows that have to agree */
+    static final int WINDOWS = 5;
+
+    /**
+     * How the warmup of a run went.
+     */
+    public static class Summary {
+        public static final Summary EMPTY = new Summary(false, 0, 0, 0, false);
+
+        /** Whether the warmup length was detected rather than --warmups */
+        public final boolean adaptive;
+        public final long operations;
+        public final long durationMs;
+        public final int windows;
+        /** False if --warmup_max_sec ran out first */
+        public final boolean steady;
+
+        Summary(boolean adaptive, long operations, long durationMs, int windows, boolean steady) {
+            this.adaptive = adaptive;
+            this.operations = operations;
+            this.durationMs = durationMs;
+            this.windows = windows;
+            this.steady = steady;
+        }
+
+        /**
+         * @return Summary of a fixed --warmups warmup
+         */
+        public static Summary fixed(long operations, long durationMs) {
+            return new Summary(false, operations, durationMs, 0, false);
+        }
+    }
+
+    /**
+     * Throughput drift over the timed phase.
+     */
+    public static class Drift {
+        public final int windows;
+        /** Throughput of the last third of the windows relative to the first third */
+        public final double driftPercent;
+        public final double throughputCv;
+
+        Drift(int windows, double driftPercent, double throughputCv) {
+            this.windows = windows;
+            this.driftPercent = driftPercent;
+            this.throughputCv = throughputCv;
+        }
+    }
+
+    /**
+     * Runs one warmup operation on a worker.
+     */
+    public interface Task {
+        void run(int threadId);
+    }
+
+    private final long windowMs;
+    private final long maxMs;
+    private final double maxCv;
+    private final List<double[]> windows = new ArrayList<>();
+    private long operations;
+    private long windowOperations;
+    private long windowBytes;
+    private double windowLatencyMs;
+    private volatile boolean done;
+
+    public SteadyStateDetector(BenchmarkParameters parameters) {
+        this.windowMs = parameters.warmupWindowMs;
+        this.maxMs = parameters.warmupMaxSec * 1000;
+        this.maxCv = parameters.warmupCv;
+    }
+
+    /**
+     * Record a completed warmup operation.
+     */
+    public synchronized void record(double latencyMs, long bytes) {
+        operations++;
+        windowOperations++;
+        windowBytes += bytes;
+        windowLatencyMs += latencyMs;
+    }
+
+    /**
+     * Keep every worker busy with warmup operations until the windows
+     * settle or --warmup_max_sec runs out.
+     */
+    public Summary run(int threads, Task task) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat(SchedulerStats.WORKER_THREAD_PREFIX + "%d")
+                .build());
+        long startMs = System.currentTimeMillis();
+        for (int t = 0; t < threads; t++) {
+            final int threadId = t;
+            executor.submit(() -> {
+                while (!done) {
+                    task.run(threadId);
+                }
+            });
+        }
+        boolean steady = false;
+        try {
+            while (!steady && System.currentTimeMillis() - startMs < maxMs) {
+                Thread.sleep(windowMs);
+                closeWindow();
+                steady = isSteady();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Operations in flight finish before the timed phase starts
+        done = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            return new Summary(true, operations, System.currentTimeMillis() - startMs, windows.size(), steady);
+        }
+    }
+
+    private synchronized void closeWindow() {
+        double seconds = windowMs / 1000.0;
+        // Operations per second where no bytes move, e.g. metadata operations
+        double throughput = (windowBytes > 0 ? windowBytes : windowOperations) / seconds;
+        double meanLatency = windowOperations == 0 ? 0.0 : windowLatencyMs / windowOperations;
+        windows.add(new double[] {throughput, meanLatency, windowOperations});
+        windowOperations = 0;
+        windowBytes = 0;
+        windowLatencyMs = 0;
+    }
+
+    private synchronized boolean isSteady() {
+        if (windows.size() < WINDOWS) {
+            return false;
+        }
+        List<double[]> last = windows.subList(windows.size() - WINDOWS, windows.size());
+        double[] throughput = new double[WINDOWS];
+        double[] latency = new double[WINDOWS];
+        for (int i = 0; i < WINDOWS; i++) {
+            if (last.get(i)[2] == 0) {
+                // Operations longer than a window; nothing to judge yet
+                return false;
+            }
+            throughput[i] = last.get(i)[0];
+            latency[i] = last.get(i)[1];
+        }
+        return cv(throughput) < maxCv && cv(latency) < maxCv;
+    }
+
+    /**
+     * Cut the operations of the timed phase into windows by completion time
+     * and compare the throughput of the first and last third.
+     */
+    public static Drift drift(List<StatWatcher.OperationRecord> ops, long windowMs) {
+        if (ops.isEmpty() || windowMs <= 0) {
+            return new Drift(0, 0, 0);
+        }
+        long firstMs = Long.MAX_VALUE;
+        long lastMs = Long.MIN_VALUE;
+        long totalBytes = 0;
+        for (StatWatcher.OperationRecord op : ops) {
+            firstMs = Math.min(firstMs, op.timestampMs);
+            lastMs = Math.max(lastMs, op.timestampMs);
+            totalBytes += op.success ? op.bytes : 0;
+        }
+        // The last window is partial and left out
+        int count = (int) ((lastMs - firstMs) / windowMs);
+        if (count < 3) {
+            return new Drift(count, 0, 0);
+        }
+        double[] throughput = new double[count];
+        for (StatWatcher.OperationRecord op : ops) {
+            int window = (int) ((op.timestampMs - firstMs) / windowMs);
+            if (op.success && window < count) {
+                throughput[window] += totalBytes > 0 ? op.bytes : 1;
+            }
+        }
+        int third = count / 3;
+        double first = 0;
+        double last = 0;
+        for (int i = 0; i < third; i++) {
+            first += throughput[i];
+            last += throughput[count - third + i];
+        }
+        double mean = mean(throughput);
+        double driftPercent = mean == 0 ? 0.0 : (last - first) / third / mean * 100;
+        return new Drift(count, driftPercent, cv(throughput));
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    /**
+     * @return Coefficient of variation (sample standard deviation over mean)
+     */
+    static double cv(double[] values) {
+        double mean = mean(values);
+        if (mean == 0) {
+            return Double.MAX_VALUE;
+        }
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return Math.sqrt(squares / (values.length - 1)) / mean;
+    }
+}
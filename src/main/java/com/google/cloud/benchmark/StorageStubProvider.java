@@ -1,8 +1,10 @@
 package com.google.cloud.benchmark;
 
+import com.google.auth.oauth2.GoogleCredentials;
 import com.google.storage.v2.StorageGrpc;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
+import io.grpc.auth.MoreCallCredentials;
 
 /**
  * Interface for providing Storage stubs with different channel pooling
@@ -29,6 +31,29 @@ public interface StorageStubProvider {
         }
     }
 
+    /**
+     * Create the stubs of a channel with the call credentials and compression
+     * of the run.
+     *
+     * @param credentials Call credentials, or null for insecure runs
+     */
+    static StubHolder createStubHolder(ManagedChannel channel, GoogleCredentials credentials,
+            BenchmarkParameters parameters) {
+        StorageGrpc.StorageBlockingStub blockingStub = StorageGrpc.newBlockingStub(channel);
+        StorageGrpc.StorageStub asyncStub = StorageGrpc.newStub(channel);
+
+        if (credentials != null) {
+            blockingStub = blockingStub.withCallCredentials(MoreCallCredentials.from(credentials));
+            asyncStub = asyncStub.withCallCredentials(MoreCallCredentials.from(credentials));
+        }
+        if (!parameters.grpcCompression.isEmpty()) {
+            blockingStub = blockingStub.withCompression(parameters.grpcCompression);
+            asyncStub = asyncStub.withCompression(parameters.grpcCompression);
+        }
+
+        return new StubHolder(blockingStub, asyncStub, channel);
+    }
+
     /**
      * Get a stub holder for performing an operation.
      * 
@@ -36,6 +61,16 @@ public interface StorageStubProvider {
      */
     StubHolder getStub();
 
+    /**
+     * Get a stub holder on a channel other than the given one, if the policy
+     * has one available. Used to send hedge requests to a different backend
+     * connection.
+     * 
+     * @param exclude The channel to avoid
+     * @return StubHolder containing the stubs and channel
+     */
+    StubHolder getStub(ManagedChannel exclude);
+
     /**
      * Report the result of an operation for metrics and channel management.
      * 
@@ -45,6 +80,17 @@ public interface StorageStubProvider {
      */
     void reportResult(ManagedChannel channel, Status status, long bytes);
 
+    /**
+     * Connect the channels the given number of worker threads will use, so
+     * connection setup stays out of the timed phase. Policies that create
+     * channels per call have nothing to connect.
+     * 
+     * @param threads   Number of worker threads about to run
+     * @param timeoutMs How long to wait for the channels to become ready
+     */
+    default void preconnect(int threads, long timeoutMs) {
+    }
+
     /**
      * Shutdown all channels managed by this provider.
      */
@@ -0,0 +1,129 @@
+package com.google.cloud.benchmark;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import java.net.SocketAddress;
+
+/**
+ * Client interceptor that counts message bytes as sent on the wire (after
+ * compression) and before compression, so compressed and logical traffic
+ * can be compared. With per-subchannel tracking, streams and wire bytes are
+ * also attributed to the connection that carried them. Only traffic of the
+ * timed phase is counted, so warmup, prefill and preconnect are left out.
+ */
+public class WireStatsInterceptor implements ClientInterceptor {
+    private final StatWatcher watcher;
+    private final boolean perSubchannel;
+
+    private final ClientStreamTracer tracer = new ClientStreamTracer() {
+        @Override
+        public void outboundWireSize(long bytes) {
+            watcher.addWireBytesSent(bytes);
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            watcher.addWireBytesReceived(bytes);
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+            watcher.addUncompressedBytesSent(bytes);
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+            watcher.addUncompressedBytesReceived(bytes);
+        }
+    };
+
+    private final ClientStreamTracer.Factory tracerFactory = new ClientStreamTracer.Factory() {
+        @Override
+        public ClientStreamTracer newClientStreamTracer(ClientStreamTracer.StreamInfo info, Metadata headers) {
+            return perSubchannel ? new SubchannelTracer() : tracer;
+        }
+    };
+
+    public WireStatsInterceptor(StatWatcher watcher) {
+        this(watcher, false);
+    }
+
+    public WireStatsInterceptor(StatWatcher watcher, boolean perSubchannel) {
+        this.watcher = watcher;
+        this.perSubchannel = perSubchannel;
+    }
+
+    /**
+     * Per-stream tracer that learns its connection when the stream is
+     * created on a transport.
+     */
+    private class SubchannelTracer extends ClientStreamTracer {
+        private String subchannel;
+        private StatWatcher.SubchannelStats stats;
+
+        @Override
+        public void streamCreated(Attributes transportAttrs, Metadata headers) {
+            SocketAddress remote = transportAttrs.get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+            SocketAddress local = transportAttrs.get(Grpc.TRANSPORT_ATTR_LOCAL_ADDR);
+            subchannel = remote + " via " + local;
+            if (watcher.isInTimedPhase()) {
+                timedStats().streams.incrementAndGet();
+            }
+        }
+
+        /**
+         * @return Stats of this stream's connection, or null outside the
+         *         timed phase
+         */
+        private StatWatcher.SubchannelStats timedStats() {
+            if (subchannel == null || !watcher.isInTimedPhase()) {
+                return null;
+            }
+            if (stats == null) {
+                stats = watcher.getSubchannel(subchannel);
+            }
+            return stats;
+        }
+
+        @Override
+        public void outboundWireSize(long bytes) {
+            tracer.outboundWireSize(bytes);
+            StatWatcher.SubchannelStats timed = timedStats();
+            if (timed != null) {
+                timed.bytesSent.addAndGet(bytes);
+            }
+        }
+
+        @Override
+        public void inboundWireSize(long bytes) {
+            tracer.inboundWireSize(bytes);
+            StatWatcher.SubchannelStats timed = timedStats();
+            if (timed != null) {
+                timed.bytesReceived.addAndGet(bytes);
+            }
+        }
+
+        @Override
+        public void outboundUncompressedSize(long bytes) {
+            tracer.outboundUncompressedSize(bytes);
+        }
+
+        @Override
+        public void inboundUncompressedSize(long bytes) {
+            tracer.inboundUncompressedSize(bytes);
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+            CallOptions callOptions, Channel next) {
+        return next.newCall(method, callOptions.withStreamTracerFactory(tracerFactory));
+    }
+}
@@ -0,0 +1,183 @@
+package com.google.cloud.benchmark;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted mix of operations loaded from a JSON workload file (--workload).
+ * Example:
+ *
+ * <pre>
+ * {
+ *   "operations": [
+ *     {"type": "read", "weight": 80, "read_limit": 1048576},
+ *     {"type": "write", "weight": 20, "chunk_size": 2097152,
+ *      "size": {"distribution": "lognormal", "median": 1048576, "sigma": 1.5, "max": 268435456}}
+ *   ]
+ * }
+ * </pre>
+ *
+ * Per-operation fields left out fall back to the command line flags.
+ */
+public class Workload {
+
+    static class Spec {
+        List<OperationSpec> operations;
+    }
+
+    static class OperationSpec {
+        String type;
+        double weight = 1.0;
+        Long chunkSize;
+        Long readOffset;
+        Long readLimit;
+        SizeDistributions.Spec size;
+    }
+
+    /**
+     * An operation type in the mix with its parameters.
+     */
+    private static class Entry {
+        final String type;
+        final SizeDistribution size;
+        final long chunkSize;
+        final long readOffset;
+        final long readLimit;
+        final Operation fixed;
+
+        Entry(String type, SizeDistribution size, long chunkSize, long readOffset, long readLimit) {
+            this.type = type;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.readOffset = readOffset;
+            this.readLimit = readLimit;
+            // Reads have no per-run parameters, so they can share one instance
+            this.fixed = "write".equals(type) ? null : new Operation(type, 0, chunkSize, readOffset, readLimit);
+        }
+
+        Operation next() {
+            if (fixed != null) {
+                return fixed;
+            }
+            return new Operation(type, size.sample(), chunkSize, readOffset, readLimit);
+        }
+    }
+
+    private static final List<String> WORKLOAD_TYPES =
+            Arrays.asList("read", "random-read", "write", "stat", "list", "delete", "update");
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final double[] cumulativeWeights;
+
+    private Workload(Spec spec, BenchmarkParameters parameters) {
+        if (spec == null || spec.operations == null || spec.operations.isEmpty()) {
+            throw new IllegalArgumentException("Workload must define at least one operation");
+        }
+        this.cumulativeWeights = new double[spec.operations.size()];
+        double total = 0;
+        for (OperationSpec op : spec.operations) {
+            String type = op.type == null ? "" : op.type.toLowerCase();
+            if (!WORKLOAD_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unknown workload operation: " + op.type);
+            }
+            if (op.weight <= 0) {
+                throw new IllegalArgumentException("Workload weight must be positive for " + op.type);
+            }
+            long defaultSize = parameters.writeSize > 0 ? parameters.writeSize : 1024 * 1024;
+            entries.add(new Entry(type,
+                    SizeDistributions.fromSpec(op.size, defaultSize),
+                    op.chunkSize != null ? op.chunkSize : parameters.chunkSize,
+                    op.readOffset != null ? op.readOffset : parameters.readOffset,
+                    op.readLimit != null ? op.readLimit : parameters.readLimit));
+            total += op.weight;
+            cumulativeWeights[entries.size() - 1] = total;
+        }
+    }
+
+    /**
+     * Load the workload named by --workload.
+     *
+     * @return The workload, or null if none is configured
+     */
+    public static Workload fromParameters(BenchmarkParameters parameters) {
+        if (parameters.workload.isEmpty()) {
+            return parameters.mtest > 0 ? metadataTest(parameters) : null;
+        }
+        Gson gson = new GsonBuilder()
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create();
+        try (Reader reader = Files.newBufferedReader(Paths.get(parameters.workload))) {
+            return new Workload(gson.fromJson(reader, Spec.class), parameters);
+        } catch (IOException | JsonParseException e) {
+            throw new IllegalArgumentException("Failed to load workload " + parameters.workload, e);
+        }
+    }
+
+    /**
+     * The --mtest mix: stat, list and metadata update in equal parts.
+     */
+    static Workload metadataTest(BenchmarkParameters parameters) {
+        Spec spec = new Spec();
+        spec.operations = new ArrayList<>();
+        for (String type : new String[] {"stat", "list", "update"}) {
+            OperationSpec op = new OperationSpec();
+            op.type = type;
+            spec.operations.add(op);
+        }
+        return new Workload(spec, parameters);
+    }
+
+    /**
+     * Pick the next operation according to the weights.
+     */
+    public Operation next() {
+        double pick = ThreadLocalRandom.current().nextDouble(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return entries.get(i).next();
+            }
+        }
+        return entries.get(entries.size() - 1).next();
+    }
+
+    public boolean hasWrites() {
+        return entries.stream().anyMatch(e -> "write".equals(e.type));
+    }
+
+    /**
+     * @return The largest object size any write in the mix can produce
+     */
+    public long maxWriteSize() {
+        long max = 0;
+        for (Entry entry : entries) {
+            if ("write".equals(entry.type)) {
+                max = Math.max(max, entry.size.max());
+            }
+        }
+        return max;
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        double previous = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            double share = (cumulativeWeights[i] - previous) / cumulativeWeights[cumulativeWeights.length - 1];
+            sb.append(String.format("%s %.0f%%", entries.get(i).type, share * 100));
+            previous = cumulativeWeights[i];
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package com.google.cloud.benchmark;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Produces the content of objects written by the benchmark.
+ */
+public interface WriteSource {
+
+    /**
+     * Iterates over the content of a single object.
+     */
+    interface Cursor {
+        /**
+         * @return Whether more content is left for this object
+         */
+        boolean hasRemaining();
+
+        /**
+         * @param maxLength Maximum number of bytes to return
+         * @return The next chunk of content
+         */
+        ByteString next(int maxLength);
+    }
+
+    /**
+     * Start producing the content of one object.
+     *
+     * @param size Object size in bytes
+     * @return Cursor over the object content
+     */
+    Cursor open(long size);
+
+    /**
+     * Get the whole object content as one array, if this source keeps it in
+     * memory. Lets clients with a single-shot upload API skip streaming.
+     *
+     * @param size Object size in bytes
+     * @return Array whose first {@code size} bytes are the content (it may be
+     *         longer), or null if the source only streams
+     */
+    default byte[] asArray(long size) {
+        return null;
+    }
+}
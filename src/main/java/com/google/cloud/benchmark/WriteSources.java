@@ -0,0 +1,206 @@
+package com.google.cloud.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write sources selected by --write_source. All content is prepared when the
+ * source is created so that generation cost stays out of the timed phase.
+ */
+public class WriteSources {
+    private static final long MAX_PREGENERATED_SIZE = 256 * 1024 * 1024;
+    private static final int MAX_REGION_SIZE = 1 << 30;
+
+    /**
+     * Create the write source for the given parameters.
+     *
+     * @param maxSize Largest object that will be written
+     */
+    public static WriteSource fromParameters(BenchmarkParameters parameters, long maxSize) {
+        long size = maxSize > 0 ? maxSize : 1024 * 1024;
+        switch (parameters.writeSource.toLowerCase()) {
+            case "random":
+                return new RandomArraySource(size, parameters.compressionRatio);
+            case "stream":
+                return new RotatingSource(parameters.writeSourceBufferSize, parameters.compressionRatio);
+            case "mmap":
+                if (parameters.writeSourcePath.isEmpty()) {
+                    throw new IllegalArgumentException("--write_source=mmap requires --write_source_path");
+                }
+                try {
+                    return new MappedFileSource(Paths.get(parameters.writeSourcePath));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to map " + parameters.writeSourcePath, e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown write source: " + parameters.writeSource);
+        }
+    }
+
+    /**
+     * Random content held in a single array, pre-generated for the largest
+     * object up to 256 MiB. Smaller objects use a prefix of it and larger
+     * ones repeat it, so no content is generated during the timed phase.
+     */
+    static class RandomArraySource implements WriteSource {
+        private final byte[] sharedRandomData;
+
+        RandomArraySource(long size, double compressionRatio) {
+            this.sharedRandomData = RandomData.generate((int) Math.min(size, MAX_PREGENERATED_SIZE),
+                    compressionRatio);
+        }
+
+        @Override
+        public byte[] asArray(long size) {
+            // Larger objects stream the array repeatedly
+            return sharedRandomData.length >= size ? sharedRandomData : null;
+        }
+
+        @Override
+        public Cursor open(long size) {
+            return new Cursor() {
+                private long position = 0;
+
+                @Override
+                public boolean hasRemaining() {
+                    return position < size;
+                }
+
+                @Override
+                public ByteString next(int maxLength) {
+                    int offset = (int) (position % sharedRandomData.length);
+                    int length = (int) Math.min(Math.min(maxLength, size - position),
+                            sharedRandomData.length - offset);
+                    ByteString content = ByteString.copyFrom(sharedRandomData, offset, length);
+                    position += length;
+                    return content;
+                }
+            };
+        }
+    }
+
+    /**
+     * Streams content from a fixed-size random buffer. Each object starts at
+     * a different offset of the buffer and every chunk is stamped with an
+     * object nonce and its position, so content is effectively unique while
+     * memory stays constant regardless of object size. Chunks are slices of
+     * the buffer behind a 16-byte stamp, so nothing is copied per chunk.
+     */
+    static class RotatingSource implements WriteSource {
+        private static final int STAMP_SIZE = 16;
+
+        private final ByteString ring;
+        private final AtomicLong nonces = new AtomicLong(ThreadLocalRandom.current().nextLong());
+
+        RotatingSource(int bufferSize, double compressionRatio) {
+            this.ring = UnsafeByteOperations.unsafeWrap(
+                    RandomData.generate(Math.max(STAMP_SIZE, bufferSize), compressionRatio));
+        }
+
+        @Override
+        public Cursor open(long size) {
+            long nonce = nonces.getAndIncrement();
+            int start = (int) Math.floorMod(nonce * 0x9E3779B97F4A7C15L, (long) ring.size());
+            return new Cursor() {
+                private long position = 0;
+
+                @Override
+                public boolean hasRemaining() {
+                    return position < size;
+                }
+
+                @Override
+                public ByteString next(int maxLength) {
+                    int length = (int) Math.min(maxLength, size - position);
+                    ByteString chunk;
+                    if (length >= STAMP_SIZE) {
+                        byte[] stamp = ByteBuffer.allocate(STAMP_SIZE).putLong(nonce).putLong(position).array();
+                        chunk = UnsafeByteOperations.unsafeWrap(stamp)
+                                .concat(slice(start + position + STAMP_SIZE, length - STAMP_SIZE));
+                    } else {
+                        chunk = slice(start + position, length);
+                    }
+                    position += length;
+                    return chunk;
+                }
+            };
+        }
+
+        /**
+         * @return {@code length} bytes of the ring from {@code offset},
+         *         wrapping around its end
+         */
+        private ByteString slice(long offset, int length) {
+            ByteString content = ByteString.EMPTY;
+            int from = (int) (offset % ring.size());
+            while (length > 0) {
+                int n = Math.min(length, ring.size() - from);
+                content = content.concat(ring.substring(from, from + n));
+                length -= n;
+                from = 0;
+            }
+            return content;
+        }
+    }
+
+    /**
+     * Streams content from a memory-mapped local file, repeating the file if
+     * the object is larger. Chunks wrap the mapping without copying.
+     */
+    static class MappedFileSource implements WriteSource {
+        private final MappedByteBuffer[] regions;
+        private final long fileSize;
+
+        MappedFileSource(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                this.fileSize = channel.size();
+                if (fileSize == 0) {
+                    throw new IllegalArgumentException("Write source file is empty: " + path);
+                }
+                int count = (int) ((fileSize + MAX_REGION_SIZE - 1) / MAX_REGION_SIZE);
+                this.regions = new MappedByteBuffer[count];
+                for (int i = 0; i < count; i++) {
+                    long offset = (long) i * MAX_REGION_SIZE;
+                    regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                            Math.min(MAX_REGION_SIZE, fileSize - offset));
+                    // Fault the pages in now rather than during the timed phase
+                    regions[i].load();
+                }
+            }
+        }
+
+        @Override
+        public Cursor open(long size) {
+            return new Cursor() {
+                private long position = 0;
+
+                @Override
+                public boolean hasRemaining() {
+                    return position < size;
+                }
+
+                @Override
+                public ByteString next(int maxLength) {
+                    long fileOffset = position % fileSize;
+                    MappedByteBuffer region = regions[(int) (fileOffset / MAX_REGION_SIZE)];
+                    int regionOffset = (int) (fileOffset % MAX_REGION_SIZE);
+                    int length = (int) Math.min(Math.min(maxLength, size - position),
+                            region.capacity() - regionOffset);
+                    ByteBuffer slice = region.duplicate();
+                    slice.position(regionOffset).limit(regionOffset + length);
+                    position += length;
+                    return UnsafeByteOperations.unsafeWrap(slice.slice());
+                }
+            };
+        }
+    }
+}